@@ -19,8 +19,21 @@ import java.util.Arrays;
 import java.util.LinkedList;
 
 public class Board {
+    // directions the blank square can move in; opposite directions differ in the last bit
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int DOWN = 2;
+    public static final int UP = 3;
+
+    // callback of forEachNeighbor, called before any neighbor board is made
+    public interface NeighborVisitor {
+        // the blank square can move in direction, changing the manhattan distance by delta
+        void visit(int direction, int manhattanDelta);
+    }
+
     private int[][] tiles;          // for a defensive copy (make it immutable)
     private final int dimesion;     // dimension of the 2d array
+    private int blank = -1;         // position of the blank square in row-major order
 
     // create a board from an n-by-n array of tiles,
     // where tiles[row][col] = tile at (row, col)
@@ -32,6 +45,7 @@ public class Board {
         for (int i = 0; i < tiles.length; i++) {
             for (int j = 0; j < tiles.length; j++) {
                 this.tiles[i][j] = tiles[i][j];
+                if (tiles[i][j] == 0) blank = i * tiles.length + j;
             }
         }
     }
@@ -104,17 +118,60 @@ public class Board {
     // all neighboring boards by exchanging the blank square with
     // each of its neighbors square
     public Iterable<Board> neighbors() {
-        LinkedList<Board> neighbors = swap(getBlankIndex(), "Neighbor");
+        LinkedList<Board> neighbors = new LinkedList<>();
+        forEachNeighbor((direction, delta) -> neighbors.add(move(direction)));
         return neighbors;
     }
 
+    // visit every direction the blank square can move in, with the change of the
+    // manhattan distance of that move, without making the neighbor boards;
+    // call move(direction) for the boards that are needed
+    public void forEachNeighbor(NeighborVisitor visitor) {
+        int blank = blankPosition();
+        int row = blank / dimesion;
+        int col = blank % dimesion;
+
+        if (col != 0) visitor.visit(LEFT, manhattanDelta(row, col, row, col - 1));
+        if (col != dimesion - 1) visitor.visit(RIGHT, manhattanDelta(row, col, row, col + 1));
+        if (row != dimesion - 1) visitor.visit(DOWN, manhattanDelta(row, col, row + 1, col));
+        if (row != 0) visitor.visit(UP, manhattanDelta(row, col, row - 1, col));
+    }
+
+    // the neighbor board where the blank square moved in the given direction
+    public Board move(int direction) {
+        int blank = blankPosition();
+        int row = blank / dimesion;
+        int col = blank % dimesion;
+
+        if (direction == LEFT && col != 0) return swap(row, col, row, col - 1);
+        if (direction == RIGHT && col != dimesion - 1) return swap(row, col, row, col + 1);
+        if (direction == DOWN && row != dimesion - 1) return swap(row, col, row + 1, col);
+        if (direction == UP && row != 0) return swap(row, col, row - 1, col);
+        throw new IllegalArgumentException("blank square can not move in direction " + direction);
+    }
+
+    // the direction that undoes a move in the given direction
+    public static int opposite(int direction) {
+        return direction ^ 1;
+    }
+
+    // change of the manhattan distance when the tile at (row2, col2) slides
+    // into the blank square at (row1, col1)
+    private int manhattanDelta(int row1, int col1, int row2, int col2) {
+        int tile = tiles[row2][col2];
+        int goalRow = (tile - 1) / dimesion;
+        int goalCol = (tile - 1) % dimesion;
+        return Math.abs(row1 - goalRow) + Math.abs(col1 - goalCol)
+                - Math.abs(row2 - goalRow) - Math.abs(col2 - goalCol);
+    }
+
     // a board that is obtained by exchanging any pair of tiles
     public Board twin() {
         LinkedList<Board> twin = swap(getBlankIndex(), "twin");
         return twin.get(0);
     }
 
-    // swap the indices and return a new board for neighbor and twin
+    // swap the indices and return a new board for the twin
     private LinkedList<Board> swap(int[] index, String type) {
         // blank square index
         int row = index[0];
@@ -136,29 +193,6 @@ public class Board {
                 b = this.swap(row, col + 1, row + 1, col);
 
             swappedBoards.add(b);
-            return swappedBoards;
-        }
-
-        else if (type.equals("Neighbor")) {
-            if (col != 0) {
-                Board b = this.swap(row, col, row, col - 1);
-                swappedBoards.add(b);
-            }
-
-            if (col != dimesion - 1) {
-                Board b = this.swap(row, col, row, col + 1);
-                swappedBoards.add(b);
-            }
-
-            if (row != dimesion - 1) {
-                Board b = this.swap(row, col, row + 1, col);
-                swappedBoards.add(b);
-            }
-
-            if (row != 0) {
-                Board b = this.swap(row, col, row - 1, col);
-                swappedBoards.add(b);
-            }
         }
 
         return swappedBoards;
@@ -170,9 +204,44 @@ public class Board {
         int temp = newBoard.tiles[row1][col1];
         newBoard.tiles[row1][col1] = newBoard.tiles[row2][col2];
         newBoard.tiles[row2][col2] = temp;
+        if (temp == 0) newBoard.blank = row2 * dimesion + col2;
+        else if (newBoard.tiles[row1][col1] == 0) newBoard.blank = row1 * dimesion + col1;
         return newBoard;
     }
 
+    // compact encoding of this board: 4 bits per tile in row-major order,
+    // the first tile in the lowest bits (only for boards up to 4-by-4)
+    public long pack() {
+        if (dimesion > 4) throw new IllegalArgumentException("board is larger than 4x4: " + dimesion);
+
+        long packed = 0;
+        for (int i = 0; i < dimesion; i++) {
+            for (int j = 0; j < dimesion; j++) {
+                packed |= (long) tiles[i][j] << (4 * (i * dimesion + j));
+            }
+        }
+        return packed;
+    }
+
+    // the n-by-n board of a packed encoding (see pack)
+    public static Board unpack(long packed, int n) {
+        if (n < 1 || n > 4) throw new IllegalArgumentException("dimension must be 1 to 4: " + n);
+
+        int[][] tiles = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                tiles[i][j] = (int) (packed >>> (4 * (i * n + j))) & 0xf;
+            }
+        }
+        return new Board(tiles);
+    }
+
+    // position of the blank square in row-major order
+    private int blankPosition() {
+        if (blank == -1) throw new IllegalStateException("board has no blank square");
+        return blank;
+    }
+
     private int[] getBlankIndex() {
         int[] index = new int[2];
         outer:
@@ -0,0 +1,207 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 BoundedSolver.java
+ *  Execution:    java-algs4 BoundedSolver input.txt [maxExpanded] [maxOpen] [weight]
+ *  Dependencies: In.algs4 StdOut.algs4 Stack.algs4 MinPQ.algs4 Board.java SearchStatus.java
+ *
+ * A* solver for the 8puzzle that can be bounded. Unlike Solver, which runs until
+ * the goal board is found, this one stops cleanly when it has expanded too many
+ * nodes or its open lists (the priority queues) grew too large, and reports the
+ * reason through a SearchStatus.
+ *
+ * With a weight w > 1 it runs in anytime (weighted A*) mode: nodes are ordered by
+ * moves + w * manhattan, so a suboptimal solution is found fast. The search then
+ * keeps going, pruning every node that can not beat the best solution so far
+ * (moves + manhattan >= best moves), and improves the solution until the open list
+ * is empty (the solution is then proven optimal) or the budget runs out.
+ *
+ * As in Solver, a twin board is searched in lockstep until the first solution is
+ * found. If the twin reaches the goal board first, the initial board is unsolvable.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.MinPQ;
+import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.StdOut;
+
+public class BoundedSolver {
+    // inner class to represent the search node
+    private static class Node implements Comparable<Node> {
+        private final Node prev;        // previous node
+        private final Board board;      // current Board
+        private final int numMoves;     // number of moves made
+
+        private final int manhattan;    // cache manhattan method to prevent overhead calculations
+        private final double priority;  // cache weighted priority (moves + weight * manhattan)
+
+        public Node(Board board, Node previous, int numMoves, double weight) {
+            this.board = board;
+            prev = previous;
+            this.numMoves = numMoves;
+
+            manhattan = board.manhattan();
+            priority = numMoves + weight * manhattan;
+        }
+
+        // lower priority to be deqeued from the PQ first
+        public int compareTo(Node that) {
+            int result = Double.compare(this.priority, that.priority);
+            // if priorities are equal, compare manhattan values only
+            if (result != 0)
+                return result;
+            else {
+                return Integer.compare(this.manhattan, that.manhattan);
+            }
+        }
+    }
+
+    private final Stack<Board> solutionBoards = new Stack<>();
+    private final SearchStatus status;
+    private final int moves;
+    private final long expanded;    // number of nodes removed from the open lists (twin included)
+
+    // solve the initial board with plain A* and no budget
+    public BoundedSolver(Board initial) {
+        this(initial, Long.MAX_VALUE, Integer.MAX_VALUE, 1.0);
+    }
+
+    // solve the initial board expanding at most maxExpanded nodes and keeping at most
+    // maxOpen nodes in the open lists, ordering nodes by moves + weight * manhattan
+    public BoundedSolver(Board initial, long maxExpanded, int maxOpen, double weight) {
+        if (initial == null) throw new IllegalArgumentException("Argument is null!");
+        if (maxExpanded < 1 || maxOpen < 1)
+            throw new IllegalArgumentException("budget must be positive");
+        if (!(weight >= 1.0))
+            throw new IllegalArgumentException("weight must be at least 1: " + weight);
+
+        MinPQ<Node> pqMain = new MinPQ<>();
+        MinPQ<Node> pqTwin = new MinPQ<>();
+        pqMain.insert(new Node(initial, null, 0, weight));
+        pqTwin.insert(new Node(initial.twin(), null, 0, weight));
+
+        Node best = null;                         // best goal node found so far
+        SearchStatus result = null;
+        long count = 0;
+
+        while (result == null) {
+            // the search is over once a solution exists and nothing left can beat it
+            if (best != null && pqMain.isEmpty()) {
+                result = SearchStatus.OPTIMAL;
+                break;
+            }
+            if (count >= maxExpanded) {
+                result = best != null ? SearchStatus.SUBOPTIMAL : SearchStatus.NODE_LIMIT;
+                break;
+            }
+            if (pqMain.size() + (pqTwin == null ? 0 : pqTwin.size()) > maxOpen) {
+                result = best != null ? SearchStatus.SUBOPTIMAL : SearchStatus.MEMORY_LIMIT;
+                break;
+            }
+
+            Node dequeuedNode = pqMain.delMin();
+            count++;
+
+            // after the first solution, skip nodes that can not improve it
+            // (manhattan never overestimates the remaining moves)
+            if (best != null && dequeuedNode.numMoves + dequeuedNode.manhattan >= best.numMoves)
+                continue;
+
+            if (dequeuedNode.board.isGoal()) {
+                best = dequeuedNode;
+                pqTwin = null;                    // the initial board is solvable
+                // with plain A* the first goal board dequeued is a shortest one
+                if (weight == 1.0) result = SearchStatus.OPTIMAL;
+                continue;
+            }
+            expand(pqMain, dequeuedNode, best, weight);
+
+            if (pqTwin != null) {
+                Node dequeuedTwinNode = pqTwin.delMin();
+                count++;
+                // if the twin reached the goal Board, the main Board is impossible to solve
+                if (dequeuedTwinNode.board.isGoal()) {
+                    result = SearchStatus.UNSOLVABLE;
+                    break;
+                }
+                expand(pqTwin, dequeuedTwinNode, null, weight);
+            }
+        }
+
+        status = result;
+        expanded = count;
+        if (best == null) {
+            moves = -1;
+        }
+        else {
+            moves = best.numMoves;
+            for (Node current = best; current != null; current = current.prev)
+                solutionBoards.push(current.board);
+        }
+    }
+
+    // insert the node neighbors except the one that matches the previous board,
+    // and except the ones that can not beat the best solution found so far
+    private static void expand(MinPQ<Node> pq, Node node, Node best, double weight) {
+        Board prevBoard = node.prev == null ? null : node.prev.board;
+        for (Board nextBoard : node.board.neighbors()) {
+            if (prevBoard != null && nextBoard.equals(prevBoard)) continue;
+
+            Node next = new Node(nextBoard, node, node.numMoves + 1, weight);
+            if (best == null || next.numMoves + next.manhattan < best.numMoves)
+                pq.insert(next);
+        }
+    }
+
+    // why the search stopped
+    public SearchStatus status() {
+        return status;
+    }
+
+    // is the initial board solvable? false if it is unsolvable or if the budget
+    // ran out before any solution was found (see status())
+    public boolean isSolvable() {
+        return status.isSolved();
+    }
+
+    // number of moves of the best solution found; -1 if none was found
+    public int moves() {
+        return moves;
+    }
+
+    // number of search nodes expanded
+    public long expanded() {
+        return expanded;
+    }
+
+    // sequence of boards in the best solution found; null if none was found
+    public Iterable<Board> solution() {
+        return isSolvable() ? solutionBoards : null;
+    }
+
+    // test client
+    public static void main(String[] args) {
+
+        // create initial board from file
+        In in = new In(args[0]);
+        int n = in.readInt();
+        int[][] tiles = new int[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                tiles[i][j] = in.readInt();
+        Board initial = new Board(tiles);
+
+        long maxExpanded = args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE;
+        int maxOpen = args.length > 2 ? Integer.parseInt(args[2]) : Integer.MAX_VALUE;
+        double weight = args.length > 3 ? Double.parseDouble(args[3]) : 1.0;
+
+        // solve the puzzle within the budget
+        BoundedSolver solver = new BoundedSolver(initial, maxExpanded, maxOpen, weight);
+
+        StdOut.println("Status = " + solver.status() + " after expanding "
+                               + solver.expanded() + " nodes");
+        if (solver.isSolvable()) {
+            StdOut.println("Number of moves = " + solver.moves());
+            for (Board board : solver.solution())
+                StdOut.println(board);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 ExternalBFS.java
+ *  Execution:    java-algs4 ExternalBFS n dir [tile ...]
+ *  Dependencies: StdOut.algs4 PatternDatabase.java
+ *
+ * External-memory breadth-first search backwards from the goal board, used to get
+ * exact distance-to-goal counts and to build pattern databases (PDBs) that do not
+ * fit in the heap.
+ *
+ * The search runs over abstract states: only the positions of the blank square and
+ * of the pattern tiles are kept, every other tile is indistinguishable. A state is
+ * packed in a long, 4 bits per position (blank first, then the pattern tiles in the
+ * given order). With every tile in the pattern this is the real puzzle.
+ *
+ * Each BFS layer (frontier) is a file of sorted, unique states written through
+ * buffered NIO channels. Successors of a layer are collected in a fixed in-memory
+ * buffer; every time it fills up it is sorted and written out as a run. The runs
+ * are then merged, which removes the duplicates (delayed duplicate detection),
+ * and the states of the previous layer are removed while merging. Every move
+ * changes the color of the blank square on a checkerboard, so the successors of
+ * layer d can only be in layer d - 1 or d + 1 and no other layer has to be read.
+ *
+ * The number of states at each depth is written to counts.txt. If the abstract
+ * state space is small enough, the depth of each state is also stored in a
+ * distance table (pattern.pdb) that PatternDatabase memory-maps.
+ *
+ *  % java-algs4 ExternalBFS 3 /tmp/pdb
+ *  0 1
+ *  1 2
+ *  2 4
+ *  ...
+ *  31 2
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class ExternalBFS {
+    private static final int DEFAULT_BUFFER = 1 << 24;    // 128 MB of successor states
+    private static final int IO_BUFFER = 1 << 16;         // bytes per channel buffer
+    private static final byte UNREACHED = (byte) 0xff;
+
+    private final int n;                   // board dimension
+    private final int[] pattern;           // pattern tiles
+    private final File dir;                // directory of the frontier files and the table
+    private final long[] buffer;           // successor states before they are sorted
+    private final ArrayList<Long> counts = new ArrayList<>();   // number of states per depth
+    private long states;                   // number of states reached
+
+    // breadth-first search of the n-by-n puzzle with every tile in the pattern
+    public ExternalBFS(int n, String dir) {
+        this(n, allTiles(n), dir, DEFAULT_BUFFER);
+    }
+
+    // breadth-first search of the n-by-n puzzle abstracted to the given pattern tiles,
+    // writing its files to dir and holding at most bufferSize successors in memory
+    public ExternalBFS(int n, int[] pattern, String dir, int bufferSize) {
+        if (n < 2 || n > 4) throw new IllegalArgumentException("dimension must be 2 to 4: " + n);
+        if (pattern == null || dir == null) throw new IllegalArgumentException("Argument is null!");
+        if (bufferSize < 4) throw new IllegalArgumentException("buffer is too small");
+        boolean[] seen = new boolean[n * n];
+        for (int tile : pattern) {
+            if (tile < 1 || tile >= n * n || seen[tile])
+                throw new IllegalArgumentException("invalid pattern tile: " + tile);
+            seen[tile] = true;
+        }
+
+        this.n = n;
+        this.pattern = pattern.clone();
+        this.dir = new File(dir);
+        this.dir.mkdirs();
+        buffer = new long[bufferSize];
+
+        try {
+            search();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void search() throws IOException {
+        long tableSize = PatternDatabase.tableSize(n, pattern.length);
+        MappedByteBuffer table = null;
+        RandomAccessFile tableFile = null;
+        // the table file is closed even if the search fails
+        try {
+            if (tableSize <= Integer.MAX_VALUE - PatternDatabase.HEADER) {
+                tableFile = new RandomAccessFile(new File(dir, PatternDatabase.FILE), "rw");
+                tableFile.setLength(0);
+                tableFile.setLength(PatternDatabase.HEADER + tableSize);
+                table = tableFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                                                   PatternDatabase.HEADER + tableSize);
+                PatternDatabase.writeHeader(table, n, pattern);
+                byte[] unreached = new byte[IO_BUFFER];
+                Arrays.fill(unreached, UNREACHED);
+                table.position(PatternDatabase.HEADER);
+                while (table.hasRemaining())
+                    table.put(unreached, 0, Math.min(unreached.length, table.remaining()));
+            }
+
+            // layer 0 is the goal state alone
+            File previous = null;
+            File current = layerFile(0);
+            try (LongWriter out = new LongWriter(current)) {
+                out.write(goalState());
+            }
+
+            for (int depth = 0; ; depth++) {
+                long count = 0;
+                try (LongReader in = new LongReader(current)) {
+                    while (in.hasNext()) {
+                        long s = in.next();
+                        count++;
+                        if (table != null)
+                            table.put((int) (PatternDatabase.HEADER + rank(s)), (byte) depth);
+                    }
+                }
+                if (count == 0) {
+                    current.delete();
+                    break;
+                }
+                counts.add(count);
+                states += count;
+
+                File next = layerFile(depth + 1);
+                expand(current, previous, next);
+                if (previous != null) previous.delete();
+                previous = current;
+                current = next;
+            }
+            if (previous != null) previous.delete();
+
+            if (table != null) table.force();
+        }
+        finally {
+            if (tableFile != null) tableFile.close();
+        }
+        try (PrintWriter out = new PrintWriter(new File(dir, "counts.txt"))) {
+            for (int depth = 0; depth < counts.size(); depth++)
+                out.println(depth + " " + counts.get(depth));
+        }
+    }
+
+    // write the successors of the current layer that are not in the previous layer
+    // to the next layer file, sorted and without duplicates
+    private void expand(File current, File previous, File next) throws IOException {
+        ArrayList<File> runs = new ArrayList<>();
+        int size = 0;
+        try (LongReader in = new LongReader(current)) {
+            while (in.hasNext()) {
+                long s = in.next();
+                int blank = (int) (s & 0xf);
+                int row = blank / n;
+                int col = blank % n;
+                if (size + 4 > buffer.length) {
+                    runs.add(writeRun(size, runs.size()));
+                    size = 0;
+                }
+                if (col != 0) buffer[size++] = move(s, blank - 1);
+                if (col != n - 1) buffer[size++] = move(s, blank + 1);
+                if (row != n - 1) buffer[size++] = move(s, blank + n);
+                if (row != 0) buffer[size++] = move(s, blank - n);
+            }
+        }
+        if (size > 0) runs.add(writeRun(size, runs.size()));
+
+        merge(runs, previous, next);
+        for (File run : runs) run.delete();
+    }
+
+    // sort the buffer and write it to a run file without duplicates
+    private File writeRun(int size, int index) throws IOException {
+        Arrays.sort(buffer, 0, size);
+        File run = new File(dir, "run-" + index + ".bin");
+        try (LongWriter out = new LongWriter(run)) {
+            for (int i = 0; i < size; i++)
+                if (i == 0 || buffer[i] != buffer[i - 1]) out.write(buffer[i]);
+        }
+        return run;
+    }
+
+    // k-way merge of the sorted runs, skipping duplicates and the states of the
+    // (sorted) previous layer
+    private void merge(ArrayList<File> runs, File previous, File next) throws IOException {
+        int k = runs.size();
+        LongReader[] readers = new LongReader[k];
+        int[] heap = new int[k + 1];     // min heap of reader indices by their next state
+        int heapSize = 0;
+        LongReader exclude = previous == null ? null : new LongReader(previous);
+
+        try (LongWriter out = new LongWriter(next)) {
+            for (int i = 0; i < k; i++) {
+                readers[i] = new LongReader(runs.get(i));
+                if (readers[i].hasNext()) {
+                    heap[++heapSize] = i;
+                    swim(heap, heapSize, readers);
+                }
+            }
+
+            boolean first = true;
+            long last = 0;
+            while (heapSize > 0) {
+                LongReader min = readers[heap[1]];
+                long s = min.next();
+                if (!min.hasNext()) heap[1] = heap[heapSize--];
+                sink(heap, heapSize, readers);
+
+                if (!first && s == last) continue;
+                first = false;
+                last = s;
+
+                while (exclude != null && exclude.hasNext() && exclude.peek() < s) exclude.next();
+                if (exclude != null && exclude.hasNext() && exclude.peek() == s) continue;
+                out.write(s);
+            }
+        }
+        finally {
+            for (LongReader reader : readers)
+                if (reader != null) reader.close();
+            if (exclude != null) exclude.close();
+        }
+    }
+
+    private static void swim(int[] heap, int k, LongReader[] readers) {
+        while (k > 1 && readers[heap[k]].peek() < readers[heap[k / 2]].peek()) {
+            int temp = heap[k];
+            heap[k] = heap[k / 2];
+            heap[k / 2] = temp;
+            k = k / 2;
+        }
+    }
+
+    private static void sink(int[] heap, int size, LongReader[] readers) {
+        int k = 1;
+        while (2 * k <= size) {
+            int j = 2 * k;
+            if (j < size && readers[heap[j + 1]].peek() < readers[heap[j]].peek()) j++;
+            if (readers[heap[k]].peek() <= readers[heap[j]].peek()) break;
+            int temp = heap[k];
+            heap[k] = heap[j];
+            heap[j] = temp;
+            k = j;
+        }
+    }
+
+    // move the blank square of state s to position next; a pattern tile there
+    // slides into the old blank position
+    private long move(long s, int next) {
+        int blank = (int) (s & 0xf);
+        long moved = (s & ~0xfL) | next;
+        for (int i = 1; i <= pattern.length; i++) {
+            if (((s >>> (4 * i)) & 0xf) == next)
+                return (moved & ~(0xfL << (4 * i))) | ((long) blank << (4 * i));
+        }
+        return moved;
+    }
+
+    // blank square last, every pattern tile at its goal position
+    private long goalState() {
+        long goal = n * n - 1;
+        for (int i = 0; i < pattern.length; i++)
+            goal |= (long) (pattern[i] - 1) << (4 * (i + 1));
+        return goal;
+    }
+
+    // index of a state in the distance table
+    private long rank(long s) {
+        return PatternDatabase.rank(s, pattern.length + 1, n * n);
+    }
+
+    private File layerFile(int depth) {
+        return new File(dir, "depth-" + depth + ".bin");
+    }
+
+    private static int[] allTiles(int n) {
+        int[] tiles = new int[n * n - 1];
+        for (int i = 0; i < tiles.length; i++)
+            tiles[i] = i + 1;
+        return tiles;
+    }
+
+    // deepest layer, the largest distance to the goal
+    public int maxDepth() {
+        return counts.size() - 1;
+    }
+
+    // number of states at the given distance from the goal
+    public long count(int depth) {
+        return counts.get(depth);
+    }
+
+    // number of states reachable from the goal
+    public long states() {
+        return states;
+    }
+
+    // sequential writer of longs through a buffered file channel
+    private static class LongWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(IO_BUFFER)
+                                                 .order(ByteOrder.LITTLE_ENDIAN);
+
+        LongWriter(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                       StandardOpenOption.WRITE,
+                                       StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(long value) throws IOException {
+            if (!buf.hasRemaining()) flush();
+            buf.putLong(value);
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) channel.write(buf);
+            buf.clear();
+        }
+
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+    }
+
+    // sequential reader of longs through a buffered file channel
+    private static class LongReader implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(IO_BUFFER)
+                                                 .order(ByteOrder.LITTLE_ENDIAN);
+        private boolean eof;
+
+        LongReader(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            buf.limit(0);
+            fill();
+        }
+
+        private void fill() throws IOException {
+            buf.compact();
+            while (buf.hasRemaining() && !eof)
+                if (channel.read(buf) < 0) eof = true;
+            buf.flip();
+        }
+
+        boolean hasNext() {
+            return buf.remaining() >= Long.BYTES;
+        }
+
+        long peek() {
+            return buf.getLong(buf.position());
+        }
+
+        long next() throws IOException {
+            long value = buf.getLong();
+            if (buf.remaining() < Long.BYTES) fill();
+            return value;
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // breadth-first search of the n-by-n puzzle, printing the number of states at each depth
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        String dir = args[1];
+        int[] pattern = allTiles(n);
+        if (args.length > 2) {
+            pattern = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++)
+                pattern[i - 2] = Integer.parseInt(args[i]);
+        }
+
+        ExternalBFS bfs = new ExternalBFS(n, pattern, dir, DEFAULT_BUFFER);
+        for (int depth = 0; depth <= bfs.maxDepth(); depth++)
+            StdOut.println(depth + " " + bfs.count(depth));
+        StdOut.println("states = " + bfs.states());
+    }
+}
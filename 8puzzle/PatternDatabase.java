@@ -0,0 +1,141 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 PatternDatabase.java
+ *  Execution:    java-algs4 PatternDatabase pattern.pdb input.txt
+ *  Dependencies: In.algs4 StdOut.algs4 Board.java
+ *
+ * Read-only, memory-mapped distance table written by ExternalBFS. It holds, for
+ * every placement of the blank square and the pattern tiles, the number of moves
+ * to bring the pattern tiles and the blank square to their goal positions. This
+ * never overestimates the moves to solve the full board, so it can be used as an
+ * A* heuristic (and it is exact when every tile is in the pattern).
+ *
+ * The file starts with a HEADER-byte header (magic, dimension, pattern tiles)
+ * followed by one byte per abstract state, indexed by the rank of the positions
+ * (blank first, then the pattern tiles) as a partial permutation. Because the
+ * table is mapped and not read, it costs no heap and is shared between processes.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class PatternDatabase {
+    static final String FILE = "pattern.pdb";     // file name used by ExternalBFS
+    static final int HEADER = 32;                 // bytes before the table
+    private static final int MAGIC = 0x50444231;  // "PDB1"
+
+    private final MappedByteBuffer table;
+    private final int n;                          // board dimension
+    private final int[] slot;                     // slot[tile]: 1 + index in pattern, 0 if not in it
+    private final int k;                          // number of pattern tiles
+
+    // map the table file written by ExternalBFS
+    public PatternDatabase(String filename) {
+        if (filename == null) throw new IllegalArgumentException("Argument is null!");
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER)
+                throw new IllegalArgumentException("truncated pattern database: " + filename);
+            table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // check the header and the length before using them
+        if (table.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("not a pattern database: " + filename);
+        n = table.get(4);
+        k = table.get(5);
+        if (n < 2 || n > 4 || k < 0 || k > n * n - 1)
+            throw new IllegalArgumentException("corrupt pattern database: " + filename);
+        if (table.capacity() != HEADER + tableSize(n, k))
+            throw new IllegalArgumentException("truncated pattern database: " + filename);
+        slot = new int[n * n];
+        for (int i = 0; i < k; i++) {
+            int tile = table.get(6 + i);
+            if (tile < 1 || tile >= n * n || slot[tile] != 0)
+                throw new IllegalArgumentException("corrupt pattern database: " + filename);
+            slot[tile] = i + 1;
+        }
+    }
+
+    // board dimension of this table
+    public int dimension() {
+        return n;
+    }
+
+    // moves to bring the pattern tiles and the blank square of the board home;
+    // -1 if that placement can not be reached from the goal
+    public int distance(Board board) {
+        if (board == null) throw new IllegalArgumentException("Argument is null!");
+        if (board.dimension() != n)
+            throw new IllegalArgumentException("board dimension is not " + n);
+        return distance(board.pack());
+    }
+
+    // same as distance(Board) for a board packed with Board.pack
+    public int distance(long packed) {
+        long abstractState = 0;
+        for (int pos = 0; pos < n * n; pos++) {
+            int tile = (int) (packed >>> (4 * pos)) & 0xf;
+            if (tile == 0) abstractState |= pos;
+            else if (slot[tile] != 0) abstractState |= (long) pos << (4 * slot[tile]);
+        }
+        byte d = table.get((int) (HEADER + rank(abstractState, k + 1, n * n)));
+        return d == (byte) 0xff ? -1 : d & 0xff;
+    }
+
+    // number of placements of count distinct items in size positions
+    static long tableSize(int n, int count) {
+        long size = 1;
+        for (int i = 0; i <= count; i++)
+            size *= n * n - i;
+        return size;
+    }
+
+    // rank of the first count positions (4 bits each) of s as a partial permutation
+    // of size positions: each position is numbered among the ones not used before it
+    static long rank(long s, int count, int size) {
+        long r = 0;
+        int used = 0;                             // bit set of the positions used so far
+        for (int i = 0; i < count; i++) {
+            int pos = (int) (s >>> (4 * i)) & 0xf;
+            int smaller = Integer.bitCount(used & ((1 << pos) - 1));
+            r = r * (size - i) + (pos - smaller);
+            used |= 1 << pos;
+        }
+        return r;
+    }
+
+    static void writeHeader(ByteBuffer buf, int n, int[] pattern) {
+        buf.putInt(0, MAGIC);
+        buf.put(4, (byte) n);
+        buf.put(5, (byte) pattern.length);
+        for (int i = 0; i < pattern.length; i++)
+            buf.put(6 + i, (byte) pattern[i]);
+    }
+
+    // look up the distance of a board from a file
+    public static void main(String[] args) {
+        PatternDatabase pdb = new PatternDatabase(args[0]);
+
+        In in = new In(args[1]);
+        int n = in.readInt();
+        int[][] tiles = new int[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                tiles[i][j] = in.readInt();
+        Board board = new Board(tiles);
+
+        StdOut.println(board);
+        StdOut.println("Manhattan = " + board.manhattan() + " and PDB = " + pdb.distance(board));
+    }
+}
@@ -0,0 +1,286 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 PooledSolver.java
+ *  Execution:    java-algs4 PooledSolver input.txt [capacity]
+ *  Dependencies: In.algs4 StdOut.algs4 Stack.algs4 Arrays.java Board.java SearchStatus.java
+ *
+ * A* solver for boards up to 4-by-4 that does no allocation per expansion.
+ * Solver allocates a Node, a Board, its tiles and a LinkedList of neighbors for
+ * every expanded node; here the search nodes live in a pool of parallel arrays
+ * (struct of arrays) instead, which starts at INIT_CAPACITY nodes and doubles
+ * when it is full, up to the capacity given:
+ *
+ *   state[i]   the board packed in a long, 4 bits per tile (see Board.pack)
+ *   parent[i]  index of the previous node in the pool, -1 for the initial node
+ *   g[i]       number of moves made
+ *   h[i]       manhattan distance, updated incrementally from the parent's one
+ *   blank[i]   position of the blank square in row-major order
+ *
+ * The open list is a binary heap of pool indices ordered by g + h (ties broken
+ * by h, as in Solver). Boards are only built again for the final solution.
+ *
+ * Solvability is decided up front by the parity of the inversions (plus the row
+ * of the blank square for even dimensions) instead of searching a twin board.
+ * If the pool reaches the capacity the search stops with SearchStatus.MEMORY_LIMIT.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Stack;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+
+public class PooledSolver {
+    private static final int DEFAULT_CAPACITY = 1 << 22;
+    private static final int INIT_CAPACITY = 1 << 10;
+
+    // node pool (struct of arrays)
+    private long[] state;
+    private int[] parent;
+    private byte[] g;
+    private byte[] h;
+    private byte[] blank;
+    private int nodes;                 // number of nodes used in the pool
+    private final int capacity;        // most nodes the pool may grow to
+
+    // open list: binary heap of pool indices, heap[1..open]
+    private int[] heap;
+    private int open;
+
+    private final int n;               // board dimension
+    private final byte[][] distance;   // distance[tile][position]: manhattan distance of a tile
+
+    private final Stack<Board> solutionBoards = new Stack<>();
+    private final SearchStatus status;
+    private final int moves;
+
+    // find a solution to the initial board using the default pool capacity
+    public PooledSolver(Board initial) {
+        this(initial, DEFAULT_CAPACITY);
+    }
+
+    // find a solution to the initial board using at most capacity search nodes
+    public PooledSolver(Board initial, int capacity) {
+        if (initial == null) throw new IllegalArgumentException("Argument is null!");
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        n = initial.dimension();
+        if (n > 4) throw new IllegalArgumentException("board is larger than 4x4: " + n + "x" + n);
+
+        this.capacity = capacity;
+        int size = Math.min(capacity, INIT_CAPACITY);
+        state = new long[size];
+        parent = new int[size];
+        g = new byte[size];
+        h = new byte[size];
+        blank = new byte[size];
+        heap = new int[size + 1];
+
+        distance = new byte[n * n][n * n];
+        for (int tile = 1; tile < n * n; tile++) {
+            for (int pos = 0; pos < n * n; pos++) {
+                int goal = tile - 1;
+                distance[tile][pos] = (byte) (Math.abs(goal / n - pos / n)
+                        + Math.abs(goal % n - pos % n));
+            }
+        }
+
+        long start = initial.pack();
+        if (!isSolvable(start)) {
+            status = SearchStatus.UNSOLVABLE;
+            moves = -1;
+            return;
+        }
+
+        long goal = goalState();
+        int found = -1;
+        SearchStatus result = null;
+
+        add(start, -1, 0, initial.manhattan(), blankOf(start));
+        while (result == null) {
+            int node = delMin();
+            long s = state[node];
+            if (s == goal) {
+                found = node;
+                result = SearchStatus.OPTIMAL;
+                break;
+            }
+
+            int b = blank[node];
+            int prevBlank = parent[node] == -1 ? -1 : blank[parent[node]];
+            int row = b / n;
+            int col = b % n;
+            int nextG = g[node] + 1;
+
+            // slide each neighbor tile into the blank square, except the move
+            // that would go back to the previous board
+            for (int dir = 0; dir < 4 && result == null; dir++) {
+                int next;
+                if (dir == 0 && col != 0) next = b - 1;
+                else if (dir == 1 && col != n - 1) next = b + 1;
+                else if (dir == 2 && row != n - 1) next = b + n;
+                else if (dir == 3 && row != 0) next = b - n;
+                else continue;
+                if (next == prevBlank) continue;
+
+                int tile = (int) (s >>> (4 * next)) & 0xf;
+                long nextState = (s & ~(0xfL << (4 * next))) | ((long) tile << (4 * b));
+                int nextH = h[node] + distance[tile][b] - distance[tile][next];
+
+                if (nodes == capacity) result = SearchStatus.MEMORY_LIMIT;
+                else add(nextState, node, nextG, nextH, next);
+            }
+        }
+
+        status = result;
+        if (found == -1) {
+            moves = -1;
+        }
+        else {
+            moves = g[found];
+            for (int node = found; node != -1; node = parent[node])
+                solutionBoards.push(Board.unpack(state[node], n));
+        }
+    }
+
+    // take a node from the pool and insert it into the open list; depth is the
+    // number of moves made to reach it
+    private void add(long s, int prev, int depth, int manhattan, int blankPos) {
+        if (nodes == state.length) resize((int) Math.min(capacity, 2L * state.length));
+        int node = nodes++;
+        state[node] = s;
+        parent[node] = prev;
+        g[node] = (byte) depth;
+        h[node] = (byte) manhattan;
+        blank[node] = (byte) blankPos;
+
+        heap[++open] = node;
+        swim(open);
+    }
+
+    // move the pool and the open list to arrays of the given size
+    private void resize(int size) {
+        state = Arrays.copyOf(state, size);
+        parent = Arrays.copyOf(parent, size);
+        g = Arrays.copyOf(g, size);
+        h = Arrays.copyOf(h, size);
+        blank = Arrays.copyOf(blank, size);
+        heap = Arrays.copyOf(heap, size + 1);
+    }
+
+    // remove the node with the minimum priority from the open list
+    private int delMin() {
+        int min = heap[1];
+        heap[1] = heap[open--];
+        sink(1);
+        return min;
+    }
+
+    private void swim(int k) {
+        while (k > 1 && less(heap[k], heap[k / 2])) {
+            exch(k, k / 2);
+            k = k / 2;
+        }
+    }
+
+    private void sink(int k) {
+        while (2 * k <= open) {
+            int j = 2 * k;
+            if (j < open && less(heap[j + 1], heap[j])) j++;
+            if (!less(heap[j], heap[k])) break;
+            exch(k, j);
+            k = j;
+        }
+    }
+
+    // is node a before node b? lower g + h first, then lower h
+    private boolean less(int a, int b) {
+        int pa = g[a] + h[a];
+        int pb = g[b] + h[b];
+        if (pa != pb) return pa < pb;
+        return h[a] < h[b];
+    }
+
+    private void exch(int i, int j) {
+        int temp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = temp;
+    }
+
+    // packed goal board: tiles 1 to n*n-1 in row-major order, blank last
+    private long goalState() {
+        long goal = 0;
+        for (int pos = 0; pos < n * n - 1; pos++)
+            goal |= (long) (pos + 1) << (4 * pos);
+        return goal;
+    }
+
+    private int blankOf(long s) {
+        for (int pos = 0; pos < n * n; pos++)
+            if (((s >>> (4 * pos)) & 0xf) == 0) return pos;
+        throw new IllegalArgumentException("board has no blank square");
+    }
+
+    // a move changes the number of inversions by 0 (horizontal) or by n - 1 (vertical),
+    // so for odd n the parity of the inversions is invariant and for even n the parity
+    // of the inversions plus the row of the blank square is
+    private boolean isSolvable(long s) {
+        int inversions = 0;
+        for (int i = 0; i < n * n; i++) {
+            int a = (int) (s >>> (4 * i)) & 0xf;
+            if (a == 0) continue;
+            for (int j = i + 1; j < n * n; j++) {
+                int b = (int) (s >>> (4 * j)) & 0xf;
+                if (b != 0 && b < a) inversions++;
+            }
+        }
+        if (n % 2 == 1) return inversions % 2 == 0;
+        return (inversions + blankOf(s) / n) % 2 == (n - 1) % 2;
+    }
+
+    // why the search stopped
+    public SearchStatus status() {
+        return status;
+    }
+
+    // is the initial board solvable?
+    public boolean isSolvable() {
+        return status != SearchStatus.UNSOLVABLE;
+    }
+
+    // min number of moves to solve initial board; -1 if no solution was found
+    public int moves() {
+        return moves;
+    }
+
+    // number of search nodes taken from the pool
+    public int nodes() {
+        return nodes;
+    }
+
+    // sequence of boards in a shortest solution; null if no solution was found
+    public Iterable<Board> solution() {
+        return status == SearchStatus.OPTIMAL ? solutionBoards : null;
+    }
+
+    // test client
+    public static void main(String[] args) {
+
+        // create initial board from file
+        In in = new In(args[0]);
+        int n = in.readInt();
+        int[][] tiles = new int[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                tiles[i][j] = in.readInt();
+        Board initial = new Board(tiles);
+
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CAPACITY;
+        PooledSolver solver = new PooledSolver(initial, capacity);
+
+        StdOut.println("Status = " + solver.status() + " using " + solver.nodes() + " nodes");
+        if (solver.status() == SearchStatus.OPTIMAL) {
+            StdOut.println("Minimum number of moves = " + solver.moves());
+            for (Board board : solver.solution())
+                StdOut.println(board);
+        }
+    }
+}
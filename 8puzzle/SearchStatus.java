@@ -0,0 +1,20 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 SearchStatus.java
+ *  Dependencies: none
+ *
+ * Outcome of a bounded 8puzzle search. A search that runs out of its budget
+ * reports why it stopped instead of running until the JVM dies of OOM.
+ ******************************************************************************/
+
+public enum SearchStatus {
+    OPTIMAL,        // a shortest solution was found
+    SUBOPTIMAL,     // a solution was found, but the budget ran out before proving it shortest
+    UNSOLVABLE,     // the initial board can not reach the goal board
+    NODE_LIMIT,     // the expanded-node budget ran out before any solution was found
+    MEMORY_LIMIT;   // the open-list budget ran out before any solution was found
+
+    // did the search produce a solution?
+    public boolean isSolved() {
+        return this == OPTIMAL || this == SUBOPTIMAL;
+    }
+}
@@ -0,0 +1,260 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 SolutionCache.java
+ *  Execution:    java-algs4 SolutionCache cache.bin input1.txt input2.txt ...
+ *  Dependencies: In.algs4 StdOut.algs4 Board.java Solver.java
+ *
+ * Bounded LRU cache of 8puzzle solutions for services that are asked to solve the
+ * same boards again and again. Boards are keyed by their packed encoding
+ * (Board.pack), so only boards up to 4-by-4 can be cached.
+ *
+ * A shortest solution b0, b1, ..., bm also is a shortest solution of every board
+ * on it, so when a board is solved every board bi of its solution is cached with
+ * its distance m - i and the next board b(i+1). Later queries for any board on
+ * that path are answered by following the cached next boards, without a search.
+ * If part of a path was evicted the board is solved again.
+ *
+ * The cache counts hits, misses and evictions, and can be saved to and loaded
+ * from a file so it survives restarts.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+public class SolutionCache {
+    private static final int MAGIC = 0x534f4c31;     // "SOL1"
+
+    // cached distance of a board and the next board on a shortest solution
+    private static class Entry {
+        private final int moves;     // min number of moves, -1 if unsolvable
+        private final long next;     // packed next board, unused for the goal board
+
+        Entry(int moves, long next) {
+            this.moves = moves;
+            this.next = next;
+        }
+    }
+
+    // result of a lookup: the entry of the board, and the search that found it
+    // on a miss (null on a hit)
+    private static class Lookup {
+        private final Entry entry;
+        private final Solver solver;
+
+        Lookup(Entry entry, Solver solver) {
+            this.entry = entry;
+            this.solver = solver;
+        }
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<Long, Entry> cache;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // create an empty cache holding at most capacity boards
+    public SolutionCache(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+
+        // access-ordered map that drops its least recently used board when full
+        cache = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() <= SolutionCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    // create a cache holding at most capacity boards, loaded from a file saved
+    // with save() if it exists
+    public SolutionCache(int capacity, String filename) {
+        this(capacity);
+        if (filename == null) throw new IllegalArgumentException("Argument is null!");
+        File file = new File(filename);
+        if (!file.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IllegalArgumentException("not a solution cache: " + filename);
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                long key = in.readLong();
+                int moves = in.readInt();
+                long next = in.readLong();
+                cache.put(key, new Entry(moves, next));
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        evictions = 0;
+    }
+
+    // min number of moves to solve the board; -1 if it is unsolvable
+    public int moves(Board board) {
+        return lookup(board).entry.moves;
+    }
+
+    // is the board solvable?
+    public boolean isSolvable(Board board) {
+        return moves(board) != -1;
+    }
+
+    // sequence of boards in a shortest solution; null if unsolvable
+    public Iterable<Board> solution(Board board) {
+        Lookup found = lookup(board);
+        if (found.entry.moves == -1) return null;
+        if (found.solver != null) return found.solver.solution();
+
+        LinkedList<Board> path = followPath(board.pack(), found.entry, board.dimension());
+        if (path != null) return path;
+
+        // part of the path was evicted, so the hit is a miss: solve the board again
+        hits--;
+        misses++;
+        return solve(board).solution();
+    }
+
+    // cached entry of the board, solving and caching its solution on a miss
+    private Lookup lookup(Board board) {
+        if (board == null) throw new IllegalArgumentException("Argument is null!");
+        if (board.dimension() > 4)
+            throw new IllegalArgumentException("only boards up to 4x4 can be cached: "
+                                               + board.dimension() + "x" + board.dimension());
+
+        Entry entry = cache.get(board.pack());
+        if (entry != null) {
+            hits++;
+            return new Lookup(entry, null);
+        }
+        misses++;
+        Solver solver = solve(board);
+        return new Lookup(cache.get(board.pack()), solver);
+    }
+
+    // solve the board and cache every board on its solution, the board itself last
+    private Solver solve(Board board) {
+        Solver solver = new Solver(board);
+        if (!solver.isSolvable()) {
+            cache.put(board.pack(), new Entry(-1, 0));
+            return solver;
+        }
+
+        Board[] path = new Board[solver.moves() + 1];
+        int i = 0;
+        for (Board b : solver.solution())
+            path[i++] = b;
+        for (i = path.length - 1; i >= 0; i--) {
+            long next = i == path.length - 1 ? 0 : path[i + 1].pack();
+            cache.put(path[i].pack(), new Entry(path.length - 1 - i, next));
+        }
+        return solver;
+    }
+
+    // boards from key to the goal board following the cached next boards;
+    // null if one of them is no longer cached
+    private LinkedList<Board> followPath(long key, Entry entry, int n) {
+        LinkedList<Board> path = new LinkedList<>();
+        path.add(Board.unpack(key, n));
+        while (entry.moves > 0) {
+            Entry next = cache.get(entry.next);
+            if (next == null || next.moves != entry.moves - 1) return null;
+            path.add(Board.unpack(entry.next, n));
+            entry = next;
+        }
+        return path;
+    }
+
+    // save the cache to a file, least recently used boards first
+    public void save(String filename) {
+        if (filename == null) throw new IllegalArgumentException("Argument is null!");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(cache.size());
+            for (Map.Entry<Long, Entry> e : cache.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeInt(e.getValue().moves);
+                out.writeLong(e.getValue().next);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // number of cached boards
+    public int size() {
+        return cache.size();
+    }
+
+    // number of queries answered from the cache
+    public long hits() {
+        return hits;
+    }
+
+    // number of queries that needed a search
+    public long misses() {
+        return misses;
+    }
+
+    // number of boards dropped to stay within the capacity
+    public long evictions() {
+        return evictions;
+    }
+
+    // solve each board file, reusing and updating the cache file, then solve the
+    // last board twice with a cache too small for its solution
+    public static void main(String[] args) {
+        SolutionCache cache = new SolutionCache(1 << 20, args[0]);
+
+        Board last = null;
+        for (int f = 1; f < args.length; f++) {
+            In in = new In(args[f]);
+            int n = in.readInt();
+            int[][] tiles = new int[n][n];
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    tiles[i][j] = in.readInt();
+            Board initial = new Board(tiles);
+
+            StdOut.println(args[f] + ": " + cache.moves(initial));
+            last = initial;
+        }
+
+        StdOut.println("hits = " + cache.hits() + ", misses = " + cache.misses()
+                               + ", evictions = " + cache.evictions()
+                               + ", size = " + cache.size());
+        cache.save(args[0]);
+
+        // the second query finds the board, but not the start of its path, and
+        // counts a miss instead of the hit
+        if (last == null) return;
+        SolutionCache small = new SolutionCache(2);
+        for (int i = 0; i < 2; i++) {
+            int length = 0;
+            Iterable<Board> solution = small.solution(last);
+            if (solution != null)
+                for (Board b : solution) length++;
+            StdOut.println("capacity 2: " + length + " boards, hits = " + small.hits()
+                                   + ", misses = " + small.misses());
+        }
+    }
+}
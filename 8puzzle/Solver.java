@@ -29,17 +29,24 @@ public class Solver {
         private final Node prev;      // previous node
         private final Board board;    // current Board
         private final int numMoves;   // number of moves made
+        private final int lastMove;   // direction the blank square moved to get here, -1 if none
 
         private final int manhattan;  // cache manhattan method to prevent overhead calculations
         private final int priority;
                 // cache priority of each node (sum of manhattan and number of moves)
 
         public Node(Board board, Node previous, int numMoves) {
+            this(board, previous, numMoves, board.manhattan(), -1);
+        }
+
+        // manhattan is known from the previous node and the move delta
+        public Node(Board board, Node previous, int numMoves, int manhattan, int lastMove) {
             this.board = board;
             prev = previous;
             this.numMoves = numMoves;
+            this.lastMove = lastMove;
 
-            manhattan = board.manhattan();
+            this.manhattan = manhattan;
             priority = manhattan + numMoves;
         }
 
@@ -69,8 +76,6 @@ public class Solver {
         MinPQ<Node> pqTwin = new MinPQ<>();
         pqMain.insert(new Node(initial, null, 0));
         pqTwin.insert(new Node(initial.twin(), null, 0));
-        Board prevBoard = null;
-        Board prevTwinBoard = null;
 
         while (true) {
             // delete the minimum priority Node
@@ -80,12 +85,6 @@ public class Solver {
             Board dequeuedBoard = dequeuedNode.board;
             Board dequeuedTwinBoard = dequeuedTwinNode.board;
 
-            // check if it is the initial Node
-            if (dequeuedNode.prev != null)
-                prevBoard = dequeuedNode.prev.board;
-            if (dequeuedTwinNode.prev != null)
-                prevTwinBoard = dequeuedTwinNode.prev.board;
-
             // build the solutionBoards stack if we reached the goal Board
             // the stack must have the initial board popped up first
             if (dequeuedBoard.isGoal()) {
@@ -104,20 +103,22 @@ public class Solver {
                 break;
             }
 
-            // insert the dequeued Board neighbors except the one that matches
-            // the previous board to improve optimization and avoid redundant calculations
-            for (Board nextBoard : dequeuedBoard.neighbors()) {
-                if (dequeuedNode.prev == null || !nextBoard.equals(prevBoard))
-                    pqMain.insert(new Node(nextBoard, dequeuedNode, dequeuedNode.numMoves + 1));
-            }
-            for (Board nextBoard : dequeuedTwinBoard.neighbors()) {
-                if (dequeuedTwinNode.prev == null || !nextBoard.equals(prevTwinBoard))
-                    pqTwin.insert(
-                            new Node(nextBoard, dequeuedTwinNode, dequeuedTwinNode.numMoves + 1));
-            }
+            expand(pqMain, dequeuedNode);
+            expand(pqTwin, dequeuedTwinNode);
         }
     }
 
+    // insert the node neighbors except the one that matches the previous board
+    // to improve optimization and avoid redundant calculations. The move back is
+    // rejected by its direction, before its board is made.
+    private static void expand(MinPQ<Node> pq, Node node) {
+        node.board.forEachNeighbor((direction, delta) -> {
+            if (node.lastMove != -1 && direction == Board.opposite(node.lastMove)) return;
+            pq.insert(new Node(node.board.move(direction), node, node.numMoves + 1,
+                               node.manhattan + delta, direction));
+        });
+    }
+
     // is the initial board solvable?
     public boolean isSolvable() {
         return moves != -1;
@@ -1,6 +1,6 @@
 /******************************************************************************
  *  Compilation:  javac-algs4 FastCollinearPoints.java
- *  Execution:    java-algs4 FastCollinearPoints
+ *  Execution:    java-algs4 FastCollinearPoints input.txt [parallel]
  *  Dependencies: StdOut.java StdDraw.java StdOut.java In.java
  *
  *  faster solution to find the collinear points in a plane.
@@ -9,6 +9,13 @@
  *  the points by calculating the slope of each points relative to
  *  a selected point (the original point).
  *  Equal slopes means they are collinear and share the same line segment.
+ *
+ *  The sorts for different original points are independent, so in parallel
+ *  mode the original points are split into runs of at most PARALLEL_CUTOFF,
+ *  each searched by a fork/join task with its own copy of the points to sort
+ *  and its own list of segments. The lists are joined in the order of the
+ *  runs, so segments() returns the same segments in the same order as the
+ *  sequential search.
  ******************************************************************************/
 
 import edu.princeton.cs.algs4.In;
@@ -17,26 +24,69 @@ import edu.princeton.cs.algs4.StdOut;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
 
 public class FastCollinearPoints {
-    private final ArrayList<LineSegment> lineSegments = new ArrayList<>();
+    private static final int PARALLEL_CUTOFF = 16;   // original points searched by one task
+
+    private final ArrayList<LineSegment> lineSegments;
 
     // finds all line segments containing 4 or more points
     public FastCollinearPoints(Point[] points) {
+        this(points, false);
+    }
+
+    // finds all line segments containing 4 or more points, searching from the
+    // original points in parallel if parallel is true
+    public FastCollinearPoints(Point[] points, boolean parallel) {
         // check for any null or duplicate points
         checkIllegal(points);
+        if (parallel) lineSegments = new SegmentTask(points, 0, points.length).invoke();
+        else lineSegments = findSegments(points, 0, points.length);
+    }
+
+    // the segments found from the original points points[lo..hi), in order
+    private static class SegmentTask extends RecursiveTask<ArrayList<LineSegment>> {
+        private static final long serialVersionUID = 1L;
+        private final Point[] points;
+        private final int lo;
+        private final int hi;
+
+        SegmentTask(Point[] points, int lo, int hi) {
+            this.points = points;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected ArrayList<LineSegment> compute() {
+            if (hi - lo <= PARALLEL_CUTOFF) return findSegments(points, lo, hi);
+
+            int mid = (lo + hi) >>> 1;
+            SegmentTask left = new SegmentTask(points, lo, mid);
+            left.fork();
+            ArrayList<LineSegment> rightSegments = new SegmentTask(points, mid, hi).compute();
+            ArrayList<LineSegment> leftSegments = left.join();
+            leftSegments.addAll(rightSegments);
+            return leftSegments;
+        }
+    }
+
+    // the segments found from the original points points[lo..hi), in order
+    private static ArrayList<LineSegment> findSegments(Point[] points, int lo, int hi) {
+        ArrayList<LineSegment> lineSegments = new ArrayList<>();
         // create an array for sorting the points according to the slope
         Point[] sortedPoints = points.clone();
 
         // sort all the points by calculating the slope of each relative to points[i]
-        for (int i = 0; i < points.length; i++) {
+        for (int i = lo; i < hi; i++) {
             // using the comparator, sort the array of points
             Arrays.sort(sortedPoints, points[i].slopeOrder());
-            findSegments(sortedPoints);
+            findSegments(sortedPoints, lineSegments);
         }
+        return lineSegments;
     }
 
-    private void findSegments(Point[] points) {
+    private static void findSegments(Point[] points, ArrayList<LineSegment> lineSegments) {
         // temp array to store the points that are collinear
         ArrayList<Point> temp = new ArrayList<>();
         Point originalPoint = points[0];
@@ -125,7 +175,8 @@ public class FastCollinearPoints {
         StdDraw.show();
 
         // print and draw the line segments
-        FastCollinearPoints collinear = new FastCollinearPoints(points);
+        boolean parallel = args.length > 1 && args[1].equals("parallel");
+        FastCollinearPoints collinear = new FastCollinearPoints(points, parallel);
         for (LineSegment segment : collinear.segments()) {
             StdOut.println(segment);
             segment.draw();
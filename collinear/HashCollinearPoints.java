@@ -0,0 +1,206 @@
+/******************************************************************************
+ *  Compilation:  javac-algs4 HashCollinearPoints.java
+ *  Execution:    java-algs4 HashCollinearPoints input.txt
+ *  Dependencies: StdOut.java StdDraw.java In.java FastCollinearPoints.java
+ *
+ *  Hash-based solution to find the collinear points in a plane, in O(n^2)
+ *  expected time instead of the O(n^2 log n) of FastCollinearPoints.
+ *  For each original point p it does not sort the other points by slope:
+ *  it groups them by the direction from p to each point, exactly, as the
+ *  differences (dx, dy) divided by their gcd and with the sign chosen so
+ *  that both directions along a line give the same key. Points on a line
+ *  through p share a key, so no floating-point slopes are compared.
+ *
+ *  The groups live in an open-addressing hash table keyed by the pair of
+ *  longs (dx, dy) (the reduced differences of two ints take 33 bits each, so
+ *  they do not fit in one long). The table is reused for every original
+ *  point: a slot belongs to the current one only if its stamp says so.
+ *
+ *  A group of 3 or more points gives a segment of 4 or more, which is added
+ *  only from its smallest point, as in FastCollinearPoints. The segments are
+ *  the same, though not always in the same order.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdDraw;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class HashCollinearPoints {
+    private final ArrayList<LineSegment> lineSegments = new ArrayList<>();
+
+    // finds all line segments containing 4 or more points
+    public HashCollinearPoints(Point[] points) {
+        // check for any null or duplicate points
+        checkIllegal(points);
+
+        Directions directions = new Directions(points.length);
+        for (int i = 0; i < points.length; i++)
+            findSegments(points, i, directions);
+    }
+
+    // the points grouped by their direction from an original point
+    private static class Directions {
+        private final long[] dxs;      // key of each slot
+        private final long[] dys;
+        private final int[] stamp;     // 1 + the original point the slot belongs to
+        private final int[] count;     // number of points in the direction
+        private final boolean[] below; // is any of them smaller than the original point?
+        private final int[] max;       // index of the largest of them
+        private final int[] used;      // the slots taken for the current original point
+        private int size;              // number of them
+        private final int mask;
+
+        Directions(int n) {
+            // a power of 2 at least 2n, so the table is at most half full
+            int capacity = Integer.highestOneBit(Math.max(1, 2 * n - 1)) << 1;
+            dxs = new long[capacity];
+            dys = new long[capacity];
+            stamp = new int[capacity];
+            count = new int[capacity];
+            below = new boolean[capacity];
+            max = new int[capacity];
+            used = new int[n];
+            mask = capacity - 1;
+        }
+
+        // the slot of direction (dx, dy) for original point origin, taken if new
+        int slot(long dx, long dy, int origin) {
+            long h = dx * 0x9E3779B97F4A7C15L + dy;
+            h ^= h >>> 32;
+            int i = (int) (h ^ h >>> 16) & mask;
+            while (stamp[i] == origin + 1) {
+                if (dxs[i] == dx && dys[i] == dy) return i;
+                i = (i + 1) & mask;
+            }
+            stamp[i] = origin + 1;
+            dxs[i] = dx;
+            dys[i] = dy;
+            count[i] = 0;
+            below[i] = false;
+            max[i] = -1;
+            used[size++] = i;
+            return i;
+        }
+    }
+
+    // group the points by direction from points[origin], then add a segment for
+    // each direction with 3 or more points, none of them smaller than the origin
+    private void findSegments(Point[] points, int origin, Directions directions) {
+        Point originalPoint = points[origin];
+        directions.size = 0;
+        for (int j = 0; j < points.length; j++) {
+            if (j == origin) continue;
+            Point q = points[j];
+            long dx = (long) q.x() - originalPoint.x();
+            long dy = (long) q.y() - originalPoint.y();
+
+            // the same key for both directions along the line
+            if (dy < 0 || dy == 0 && dx < 0) {
+                dx = -dx;
+                dy = -dy;
+            }
+            long g = gcd(Math.abs(dx), dy);
+            if (g != 1) {
+                dx /= g;
+                dy /= g;
+            }
+            int slot = directions.slot(dx, dy, origin);
+
+            directions.count[slot]++;
+            if (q.compareTo(originalPoint) < 0) directions.below[slot] = true;
+            else if (directions.max[slot] == -1 || q.compareTo(points[directions.max[slot]]) > 0)
+                directions.max[slot] = j;
+        }
+
+        for (int k = 0; k < directions.size; k++) {
+            int slot = directions.used[k];
+            // check for any duplicate line segments.
+            if (directions.count[slot] >= 3 && !directions.below[slot])
+                lineSegments.add(new LineSegment(originalPoint, points[directions.max[slot]]));
+        }
+    }
+
+    // greatest common divisor of a >= 0 and b >= 0, not both 0 (binary gcd,
+    // which avoids the slow 64-bit divisions of Euclid's algorithm)
+    private static long gcd(long a, long b) {
+        if (a == 0) return b;
+        if (b == 0) return a;
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>= Long.numberOfTrailingZeros(a);
+        while (b != 0) {
+            b >>= Long.numberOfTrailingZeros(b);
+            if (a > b) {
+                long t = a;
+                a = b;
+                b = t;
+            }
+            b -= a;
+        }
+        return a << shift;
+    }
+
+    // null or duplicate points, found by sorting a copy
+    private void checkIllegal(Point[] points) {
+        if (points == null) throw new IllegalArgumentException();
+
+        for (Point p : points)
+            if (p == null) throw new IllegalArgumentException();
+
+        Point[] sortedPoints = points.clone();
+        Arrays.sort(sortedPoints);
+        for (int i = 1; i < sortedPoints.length; i++)
+            if (sortedPoints[i].compareTo(sortedPoints[i - 1]) == 0)
+                throw new IllegalArgumentException();
+    }
+
+    // the number of line segments
+    public int numberOfSegments() {
+        return lineSegments.size();
+    }
+
+    // the line segments
+    public LineSegment[] segments() {
+        return lineSegments.toArray(new LineSegment[0]);
+    }
+
+    // print the segments, and the time taken here and by FastCollinearPoints
+    public static void main(String[] args) {
+        // read the n points from a file
+        In in = new In(args[0]);
+        int n = in.readInt();
+        Point[] points = new Point[n];
+        for (int i = 0; i < n; i++) {
+            int x = in.readInt();
+            int y = in.readInt();
+            points[i] = new Point(x, y);
+        }
+
+        // draw the points
+        StdDraw.enableDoubleBuffering();
+        StdDraw.setXscale(0, 32768);
+        StdDraw.setYscale(0, 32768);
+        for (Point p : points) {
+            p.draw();
+        }
+        StdDraw.show();
+
+        // print and draw the line segments
+        long start = System.nanoTime();
+        HashCollinearPoints collinear = new HashCollinearPoints(points);
+        double hashTime = (System.nanoTime() - start) / 1e6;
+        for (LineSegment segment : collinear.segments()) {
+            StdOut.println(segment);
+            segment.draw();
+        }
+        StdDraw.show();
+
+        start = System.nanoTime();
+        FastCollinearPoints fast = new FastCollinearPoints(points);
+        double fastTime = (System.nanoTime() - start) / 1e6;
+        StdOut.printf("%d segments in %.1f ms (FastCollinearPoints: %d in %.1f ms)\n",
+                      collinear.numberOfSegments(), hashTime, fast.numberOfSegments(), fastTime);
+    }
+}
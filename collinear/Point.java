@@ -29,6 +29,24 @@ public class Point implements Comparable<Point> {
         this.y = y;
     }
 
+    /**
+     * Returns the <em>x</em>-coordinate of this point, for HashCollinearPoints.
+     *
+     * @return the <em>x</em>-coordinate of this point
+     */
+    int x() {
+        return x;
+    }
+
+    /**
+     * Returns the <em>y</em>-coordinate of this point, for HashCollinearPoints.
+     *
+     * @return the <em>y</em>-coordinate of this point
+     */
+    int y() {
+        return y;
+    }
+
     /**
      * Draws this point to standard draw.
      */
@@ -0,0 +1,255 @@
+/******************************************************************************
+ *  Compilation:  javac CompactKdTree.java
+ *  Execution:    java CompactKdTree input.txt
+ *  Dependencies: Point2D.algs4 RectHV.algs4 In.algs4 StdOut.algs4 LinkedList.java
+ *
+ * 2d-tree with the same operations as KdTree that stores no objects per point.
+ *
+ * Every KdTree node holds a Node, a Point2D and a RectHV, over 100 bytes per
+ * point. Here node i is just xs[i], ys[i] and the indices of its two children in
+ * the int arrays left[] and right[] (-1 for none), 24 bytes per point. The arrays
+ * grow by doubling as points are inserted.
+ *
+ * The rectangle of a node is not stored: range() only compares the rectangle
+ * with the splitting coordinates, and nearest() keeps the offsets of a subtree's
+ * cell from the query along x and y, as KdTree does. The root is unbounded, so
+ * any finite coordinates are supported.
+ *
+ * The tree is not rebalanced, so points inserted in sorted order make it a path
+ * as deep as the number of points. The queries keep the subtrees still to visit
+ * on explicit stacks instead of recursing, so they work at any depth.
+ *
+ * As in KdTree, a node at even depth splits by x (vertical) and one at odd depth
+ * by y (horizontal); points smaller than the node's coordinate go left/bottom.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+public class CompactKdTree {
+    private static final int INIT_CAPACITY = 16;
+    private static final int STACK = 64;           // initial stack size of the queries
+
+    private double[] xs;     // x-coordinate of node i
+    private double[] ys;     // y-coordinate of node i
+    private int[] left;      // left/bottom child of node i, -1 if none
+    private int[] right;     // right/top child of node i, -1 if none
+    private int size;        // number of nodes; the root is node 0
+
+    // construct an empty set of points
+    public CompactKdTree() {
+        xs = new double[INIT_CAPACITY];
+        ys = new double[INIT_CAPACITY];
+        left = new int[INIT_CAPACITY];
+        right = new int[INIT_CAPACITY];
+        size = 0;
+    }
+
+    // is the set empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // number of points in the set
+    public int size() {
+        return size;
+    }
+
+    // add the point to the set (if it is not already in the set)
+    public void insert(Point2D p) {
+        checkNull(p);
+        double x = p.x();
+        double y = p.y();
+        if (size == 0) {
+            add(x, y);
+            return;
+        }
+
+        // walk down once, remembering where the new node hangs
+        int node = 0;
+        boolean vertical = true;
+        while (true) {
+            if (xs[node] == x && ys[node] == y) return;
+
+            boolean isLeftBottom = vertical ? x < xs[node] : y < ys[node];
+            int child = isLeftBottom ? left[node] : right[node];
+            if (child == -1) {
+                int added = add(x, y);
+                if (isLeftBottom) left[node] = added;
+                else right[node] = added;
+                return;
+            }
+            node = child;
+            vertical = !vertical;
+        }
+    }
+
+    // append a node without children
+    private int add(double x, double y) {
+        if (size == xs.length) {
+            int capacity = 2 * xs.length;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        left[size] = -1;
+        right[size] = -1;
+        return size++;
+    }
+
+    // does the set contain point p?
+    public boolean contains(Point2D p) {
+        checkNull(p);
+        double x = p.x();
+        double y = p.y();
+
+        int node = size == 0 ? -1 : 0;
+        boolean vertical = true;
+        while (node != -1) {
+            if (xs[node] == x && ys[node] == y) return true;
+            boolean isLeftBottom = vertical ? x < xs[node] : y < ys[node];
+            node = isLeftBottom ? left[node] : right[node];
+            vertical = !vertical;
+        }
+        return false;
+    }
+
+    // all points that are inside the rectangle (or on the boundary); the
+    // left/bottom subtree only holds points smaller than the splitting coordinate
+    // and the right/top one the others, so a side is visited only if the
+    // rectangle reaches it
+    public Iterable<Point2D> range(RectHV rect) {
+        checkNull(rect);
+        LinkedList<Point2D> rangePoints = new LinkedList<>();
+        if (isEmpty()) return rangePoints;
+
+        // subtrees still to visit, and whether their roots split by x
+        int[] stack = new int[STACK];
+        boolean[] verticals = new boolean[STACK];
+        int top = 0;
+        stack[top] = 0;
+        verticals[top++] = true;
+        while (top > 0) {
+            top--;
+            int node = stack[top];
+            boolean vertical = verticals[top];
+            double x = xs[node];
+            double y = ys[node];
+            if (x >= rect.xmin() && x <= rect.xmax() && y >= rect.ymin() && y <= rect.ymax())
+                rangePoints.add(new Point2D(x, y));
+
+            double split = vertical ? x : y;
+            double min = vertical ? rect.xmin() : rect.ymin();
+            double max = vertical ? rect.xmax() : rect.ymax();
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+                verticals = Arrays.copyOf(verticals, 2 * verticals.length);
+            }
+            // right/top first, so the left/bottom subtree is visited first
+            if (right[node] != -1 && max >= split) {
+                stack[top] = right[node];
+                verticals[top++] = !vertical;
+            }
+            if (left[node] != -1 && min < split) {
+                stack[top] = left[node];
+                verticals[top++] = !vertical;
+            }
+        }
+        return rangePoints;
+    }
+
+    // a nearest neighbor in the set to point p; null if the set is empty
+    public Point2D nearest(Point2D p) {
+        checkNull(p);
+        if (isEmpty()) return null;
+
+        double x = p.x(), y = p.y();
+        int closest = -1;
+        double closestDist = Double.POSITIVE_INFINITY;
+
+        // subtrees still to search, as in KdTree.nearest: with whether their roots
+        // split by x, and the offsets of their cells from p along x and y
+        int[] stack = new int[STACK];
+        boolean[] verticals = new boolean[STACK];
+        double[] offX = new double[STACK];
+        double[] offY = new double[STACK];
+        int top = 0;
+        stack[top] = 0;
+        verticals[top++] = true;
+        while (top > 0) {
+            top--;
+            int node = stack[top];
+            boolean vertical = verticals[top];
+            double dx = offX[top], dy = offY[top];
+            if (dx * dx + dy * dy >= closestDist) continue;
+
+            // walk down on p's side, leaving the far children on the stack
+            for (; node != -1; vertical = !vertical) {
+                double px = xs[node] - x;
+                double py = ys[node] - y;
+                double dist = px * px + py * py;
+                if (dist < closestDist) {
+                    closest = node;
+                    closestDist = dist;
+                }
+
+                // the far child's cell is across the splitting line, at distance
+                // |diff| along the separator's axis
+                double diff = vertical ? px : py;
+                int far;
+                if (diff > 0) {
+                    far = right[node];
+                    node = left[node];
+                }
+                else {
+                    far = left[node];
+                    node = right[node];
+                }
+                if (far == -1) continue;
+                double farX = vertical ? diff : dx;
+                double farY = vertical ? dy : diff;
+                if (farX * farX + farY * farY < closestDist) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                        verticals = Arrays.copyOf(verticals, 2 * top);
+                        offX = Arrays.copyOf(offX, 2 * top);
+                        offY = Arrays.copyOf(offY, 2 * top);
+                    }
+                    stack[top] = far;
+                    verticals[top] = !vertical;
+                    offX[top] = farX;
+                    offY[top] = farY;
+                    top++;
+                }
+            }
+        }
+        return new Point2D(xs[closest], ys[closest]);
+    }
+
+    private static void checkNull(Object obj) {
+        if (obj == null) throw new IllegalArgumentException();
+    }
+
+    // read points from a file and print the nearest point to the center of the
+    // unit square and the number of points in its lower left quarter
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        CompactKdTree kdtree = new CompactKdTree();
+        while (!in.isEmpty())
+            kdtree.insert(new Point2D(in.readDouble(), in.readDouble()));
+
+        StdOut.println("size = " + kdtree.size());
+        StdOut.println("nearest to (0.5, 0.5): " + kdtree.nearest(new Point2D(0.5, 0.5)));
+        int count = 0;
+        for (Point2D p : kdtree.range(new RectHV(0.0, 0.0, 0.5, 0.5))) count++;
+        StdOut.println("points in [0, 0.5] x [0, 0.5]: " + count);
+    }
+}
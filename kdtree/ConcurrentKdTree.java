@@ -0,0 +1,302 @@
+/******************************************************************************
+ *  Compilation:  javac ConcurrentKdTree.java
+ *  Execution:    java ConcurrentKdTree input.txt
+ *  Dependencies: Point2D.algs4 RectHV.algs4 In.algs4 StdOut.algs4 StdRandom.algs4
+ *                LinkedList.java ArrayList.java Arrays.java Comparator.java
+ *
+ * 2d-tree that many threads can query while another thread inserts points.
+ *
+ * The nodes are immutable. An insert never changes a node: it copies the nodes
+ * on the path from the root to the new node (path copying) and then publishes
+ * the new root through a volatile field. A query reads the root once and works
+ * on that snapshot, which no writer will ever change, so queries take no locks
+ * and never wait (they are wait-free) and always see a consistent set of points.
+ * Writers are serialized by a lock; insertAll publishes a whole batch at once.
+ *
+ * Like CompactKdTree, the nodes do not store a rectangle: the queries derive the
+ * bounds of each node on the way down, and the root is unbounded. Like KdTree,
+ * a subtree that gets too deep is rebuilt balanced (scapegoat rebuild), here as
+ * new nodes, so old snapshots stay intact.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+
+public class ConcurrentKdTree {
+    private static final double ALPHA = 0.7;   // scapegoat balance factor, 1/2 < ALPHA < 1
+
+    // the orders of less(), with == on coordinates like Point2D.equals()
+    private static final Comparator<Point2D> X_THEN_Y =
+            (p, q) -> less(p, q, true) ? -1 : less(q, p, true) ? 1 : 0;
+    private static final Comparator<Point2D> Y_THEN_X =
+            (p, q) -> less(p, q, false) ? -1 : less(q, p, false) ? 1 : 0;
+
+    private volatile Node root;                // current snapshot, replaced by writers
+    private boolean rebalance;                 // writer only: the last insert went too deep
+
+    private static final class Node {
+        private final Point2D point;           // the point
+        private final Node leftBottom;         // the left/bottom subtree
+        private final Node rightTop;           // the right/top subtree
+        private final int count;               // number of points in the subtree
+
+        Node(Point2D point, Node leftBottom, Node rightTop) {
+            this.point = point;
+            this.leftBottom = leftBottom;
+            this.rightTop = rightTop;
+            count = 1 + count(leftBottom) + count(rightTop);
+        }
+    }
+
+    // nearest point found so far in a nearest neighbor search
+    private static class Best {
+        private Point2D point;
+        private double distance = Double.POSITIVE_INFINITY;
+    }
+
+    // construct an empty set of points
+    public ConcurrentKdTree() {
+        root = null;
+    }
+
+    // is the set empty?
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    // number of points in the set
+    public int size() {
+        return count(root);
+    }
+
+    private static int count(Node node) {
+        return node == null ? 0 : node.count;
+    }
+
+    // add the point to the set (if it is not already in the set)
+    public void insert(Point2D p) {
+        checkNull(p);
+        synchronized (this) {
+            root = insert(root, p);
+        }
+    }
+
+    // add all the points to the set; queries see either none or all of them
+    public void insertAll(Iterable<Point2D> points) {
+        checkNull(points);
+        synchronized (this) {
+            Node r = root;
+            for (Point2D p : points) {
+                checkNull(p);
+                r = insert(r, p);
+            }
+            root = r;
+        }
+    }
+
+    // the new root of the snapshot r with point p added
+    private Node insert(Node r, Point2D p) {
+        if (contains(r, p)) return r;
+        rebalance = false;
+        return insert(r, p, true, 0, count(r) + 1);
+    }
+
+    // copy of the subtree with the point added; if the new node is too deep, the
+    // first ancestor out of balance on the way back up is rebuilt
+    private Node insert(Node node, Point2D p, boolean vertical, int depth, int n) {
+        if (node == null) {
+            rebalance = depth > Math.log(n) / Math.log(1 / ALPHA) + 1;
+            return new Node(p, null, null);
+        }
+
+        Node copy;
+        if (isLeftBottom(node, p, vertical))
+            copy = new Node(node.point, insert(node.leftBottom, p, !vertical, depth + 1, n),
+                            node.rightTop);
+        else
+            copy = new Node(node.point, node.leftBottom,
+                            insert(node.rightTop, p, !vertical, depth + 1, n));
+
+        if (rebalance && Math.max(count(copy.leftBottom), count(copy.rightTop)) > ALPHA * copy.count) {
+            rebalance = false;
+            Point2D[] points = new Point2D[copy.count];
+            collect(copy, points, 0);
+            return build(points, 0, points.length, vertical);
+        }
+        return copy;
+    }
+
+    private static int collect(Node node, Point2D[] points, int from) {
+        if (node == null) return from;
+
+        points[from++] = node.point;
+        from = collect(node.leftBottom, points, from);
+        return collect(node.rightTop, points, from);
+    }
+
+    // balanced subtree of points[lo, hi) split by the median in the order of
+    // isLeftBottom()
+    private static Node build(Point2D[] points, int lo, int hi, boolean vertical) {
+        if (lo >= hi) return null;
+
+        Arrays.sort(points, lo, hi, vertical ? X_THEN_Y : Y_THEN_X);
+        int mid = (lo + hi) >>> 1;
+
+        return new Node(points[mid], build(points, lo, mid, !vertical),
+                        build(points, mid + 1, hi, !vertical));
+    }
+
+    private static double coordinate(Point2D p, boolean vertical) {
+        return vertical ? p.x() : p.y();
+    }
+
+    // the relation between a given point and the node: true if left or bottom
+    private static boolean isLeftBottom(Node node, Point2D p, boolean vertical) {
+        return less(p, node.point, vertical);
+    }
+
+    // is p before q by x then y if vertical, by y then x otherwise? As in KdTree,
+    // points with the same coordinate as a node go to either side by the other
+    // one, so points on a line parallel to an axis are split in half too
+    private static boolean less(Point2D p, Point2D q, boolean vertical) {
+        double a = vertical ? p.x() : p.y(), b = vertical ? q.x() : q.y();
+        if (a != b) return a < b;
+        return vertical ? p.y() < q.y() : p.x() < q.x();
+    }
+
+    // does the set contain point p?
+    public boolean contains(Point2D p) {
+        checkNull(p);
+        return contains(root, p);
+    }
+
+    private static boolean contains(Node node, Point2D p) {
+        boolean vertical = true;
+        while (node != null) {
+            if (p.equals(node.point)) return true;
+            node = isLeftBottom(node, p, vertical) ? node.leftBottom : node.rightTop;
+            vertical = !vertical;
+        }
+        return false;
+    }
+
+    // all points that are inside the rectangle (or on the boundary)
+    public Iterable<Point2D> range(RectHV rect) {
+        checkNull(rect);
+        LinkedList<Point2D> rangePoints = new LinkedList<>();
+        range(root, true, rect, rangePoints);
+        return rangePoints;
+    }
+
+    // a side of the splitting line is visited only if the rectangle reaches it;
+    // both sides can hold points on the line
+    private static void range(Node node, boolean vertical, RectHV rect,
+                              LinkedList<Point2D> rangePoints) {
+        if (node == null) return;
+
+        if (rect.contains(node.point)) rangePoints.add(node.point);
+        double split = coordinate(node.point, vertical);
+        double min = vertical ? rect.xmin() : rect.ymin();
+        double max = vertical ? rect.xmax() : rect.ymax();
+        if (min <= split) range(node.leftBottom, !vertical, rect, rangePoints);
+        if (max >= split) range(node.rightTop, !vertical, rect, rangePoints);
+    }
+
+    // a nearest neighbor in the set to point p; null if the set is empty
+    public Point2D nearest(Point2D p) {
+        checkNull(p);
+        Best best = new Best();
+        double inf = Double.POSITIVE_INFINITY;
+        nearest(root, true, p.x(), p.y(), -inf, -inf, inf, inf, best);
+        return best.point;
+    }
+
+    // same pruning as KdTree.nearest, with the node's rectangle
+    // [xmin, xmax] x [ymin, ymax] derived on the way down
+    private static void nearest(Node node, boolean vertical, double x, double y,
+                                double xmin, double ymin, double xmax, double ymax, Best best) {
+        if (node == null) return;
+        double dx = x < xmin ? xmin - x : x > xmax ? x - xmax : 0.0;
+        double dy = y < ymin ? ymin - y : y > ymax ? y - ymax : 0.0;
+        if (dx * dx + dy * dy >= best.distance) return;
+
+        double px = node.point.x() - x;
+        double py = node.point.y() - y;
+        double dist = px * px + py * py;
+        if (dist < best.distance) {
+            best.distance = dist;
+            best.point = node.point;
+        }
+
+        if (vertical) {
+            double split = node.point.x();
+            if (x < split) {
+                nearest(node.leftBottom, false, x, y, xmin, ymin, split, ymax, best);
+                nearest(node.rightTop, false, x, y, split, ymin, xmax, ymax, best);
+            }
+            else {
+                nearest(node.rightTop, false, x, y, split, ymin, xmax, ymax, best);
+                nearest(node.leftBottom, false, x, y, xmin, ymin, split, ymax, best);
+            }
+        }
+        else {
+            double split = node.point.y();
+            if (y < split) {
+                nearest(node.leftBottom, true, x, y, xmin, ymin, xmax, split, best);
+                nearest(node.rightTop, true, x, y, xmin, split, xmax, ymax, best);
+            }
+            else {
+                nearest(node.rightTop, true, x, y, xmin, split, xmax, ymax, best);
+                nearest(node.leftBottom, true, x, y, xmin, ymin, xmax, split, best);
+            }
+        }
+    }
+
+    private static void checkNull(Object obj) {
+        if (obj == null) throw new IllegalArgumentException();
+    }
+
+    // insert the points of a file from a writer thread while reader threads query
+    public static void main(String[] args) throws InterruptedException {
+        In in = new In(args[0]);
+        ArrayList<Point2D> points = new ArrayList<>();
+        while (!in.isEmpty())
+            points.add(new Point2D(in.readDouble(), in.readDouble()));
+
+        ConcurrentKdTree kdtree = new ConcurrentKdTree();
+        Thread writer = new Thread(() -> {
+            for (Point2D p : points)
+                kdtree.insert(p);
+        });
+
+        int readers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        long[] queries = new long[readers];
+        Thread[] threads = new Thread[readers];
+        for (int t = 0; t < readers; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                while (writer.isAlive()) {
+                    kdtree.nearest(new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0)));
+                    queries[id]++;
+                }
+            });
+        }
+
+        writer.start();
+        for (Thread t : threads) t.start();
+        writer.join();
+        for (Thread t : threads) t.join();
+
+        long total = 0;
+        for (long q : queries) total += q;
+        StdOut.println("size = " + kdtree.size() + ", queries during inserts = " + total);
+    }
+}
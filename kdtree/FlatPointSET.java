@@ -0,0 +1,214 @@
+/******************************************************************************
+ *  Compilation:  javac FlatPointSET.java
+ *  Execution:    java FlatPointSET n
+ *  Dependencies: Point2D.algs4 RectHV.algs4 StdDraw.algs4 StdOut.algs4
+ *                StdRandom.algs4 LinkedList.java PointSET.java
+ *
+ *  FlatPointSET is the brute force PointSET with the points in two flat arrays
+ *  xs[] and ys[] instead of a TreeSet of Point2D objects, so range() and
+ *  nearest() are linear scans over contiguous doubles.
+ *
+ *  The scans can use the incubating vector API, which is kept out of this file
+ *  so that it compiles without it: vector/FlatPointSETVector.java is compiled
+ *  on its own, only where the module jdk.incubator.vector is available, and
+ *  is loaded by name when the JVM runs with it:
+ *
+ *  % javac --add-modules jdk.incubator.vector -d . vector/FlatPointSETVector.java
+ *  % java --add-modules jdk.incubator.vector FlatPointSET 1000000
+ *
+ *  It processes a vector of points per step: nearest() keeps the smallest
+ *  distance in each lane and finds the index in a second pass over the block
+ *  holding the minimum, and range() tests a vector of points against the
+ *  rectangle at once. Otherwise the same scans run one point at a time. Both
+ *  compute dx * dx + dy * dy like Point2D.distanceSquaredTo, so the distances
+ *  are exactly those of PointSET.
+ *
+ *  Duplicates are detected by an open-addressing hash table of indices, so
+ *  insert() and contains() take constant expected time.
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdDraw;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+public class FlatPointSET {
+    private static final int INIT_CAPACITY = 16;
+
+    // the vector scans, or null to scan one point at a time
+    private static final Scans VECTOR = loadScans();
+
+    private double[] xs = new double[INIT_CAPACITY];
+    private double[] ys = new double[INIT_CAPACITY];
+    private int n;                                       // number of points
+    private int[] table = new int[2 * INIT_CAPACITY];    // 1 + index of a point, 0 if empty
+
+    // construct an empty set of points
+    public FlatPointSET() {
+    }
+
+    // is the set empty?
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    // number of points in the set
+    public int size() {
+        return n;
+    }
+
+    // add the point to the set (if it is not already in the set)
+    public void insert(Point2D p) {
+        checkNull(p);
+        double x = p.x(), y = p.y();
+        int slot = slot(x, y);
+        if (table[slot] != 0) return;
+
+        if (n == xs.length) {
+            xs = Arrays.copyOf(xs, 2 * n);
+            ys = Arrays.copyOf(ys, 2 * n);
+        }
+        xs[n] = x;
+        ys[n] = y;
+        table[slot] = ++n;
+
+        // keep the table at most half full
+        if (2 * n > table.length) {
+            table = new int[2 * table.length];
+            for (int i = 0; i < n; i++)
+                table[slot(xs[i], ys[i])] = i + 1;
+        }
+    }
+
+    // slot of the point in the table, or the empty slot where it belongs
+    private int slot(double x, double y) {
+        // +0.0 so that -0.0 hashes like 0.0, which it equals
+        long bits = Double.doubleToLongBits(x + 0.0) * 31 + Double.doubleToLongBits(y + 0.0);
+        int h = (int) (bits ^ bits >>> 32);
+        h ^= h >>> 16;
+        int mask = table.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            int j = table[i] - 1;
+            if (j == -1 || xs[j] == x && ys[j] == y) return i;
+        }
+    }
+
+    // does the set contain point p?
+    public boolean contains(Point2D p) {
+        checkNull(p);
+        return table[slot(p.x(), p.y())] != 0;
+    }
+
+    // draw all points to standard draw
+    public void draw() {
+        for (int i = 0; i < n; i++)
+            StdDraw.point(xs[i], ys[i]);
+    }
+
+    // all points that are inside the rectangle (or on the boundary)
+    public Iterable<Point2D> range(RectHV rect) {
+        checkNull(rect);
+        LinkedList<Point2D> enclosedPoints = new LinkedList<>();
+        int from = VECTOR != null ? VECTOR.range(xs, ys, n, rect, enclosedPoints) : 0;
+        for (int i = from; i < n; i++) {
+            if (xs[i] >= rect.xmin() && xs[i] <= rect.xmax()
+                    && ys[i] >= rect.ymin() && ys[i] <= rect.ymax())
+                enclosedPoints.add(new Point2D(xs[i], ys[i]));
+        }
+        return enclosedPoints;
+    }
+
+    // a nearest neighbor in the set to point p; null if the set is empty
+    public Point2D nearest(Point2D p) {
+        checkNull(p);
+        if (n == 0) return null;
+
+        double x = p.x(), y = p.y();
+        int min = VECTOR != null ? VECTOR.nearest(xs, ys, n, x, y) : 0;
+        double minDistance = distanceSquared(min, x, y);
+        for (int i = VECTOR != null ? VECTOR.loopBound(n) : 1; i < n; i++) {
+            double distance = distanceSquared(i, x, y);
+            if (distance < minDistance) {
+                min = i;
+                minDistance = distance;
+            }
+        }
+        return new Point2D(xs[min], ys[min]);
+    }
+
+    private double distanceSquared(int i, double x, double y) {
+        double dx = xs[i] - x;
+        double dy = ys[i] - y;
+        return dx * dx + dy * dy;
+    }
+
+    // scans of the first loopBound(n) points of xs[] and ys[], the rest being left
+    // to the scalar loops (implemented by vector/FlatPointSETVector.java)
+    interface Scans {
+        // the scans cover the points before this index
+        int loopBound(int n);
+
+        // index of a point nearest to (x, y) among the first loopBound(n)
+        // points, 0 if there are none
+        int nearest(double[] xs, double[] ys, int n, double x, double y);
+
+        // add the points inside the rectangle among the first loopBound(n)
+        // points; returns loopBound(n)
+        int range(double[] xs, double[] ys, int n, RectHV rect, LinkedList<Point2D> points);
+    }
+
+    // the vector scans if the module is present and the class was compiled
+    private static Scans loadScans() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) return null;
+        try {
+            return (Scans) Class.forName("FlatPointSETVector").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static void checkNull(Object obj) {
+        if (obj == null) throw new IllegalArgumentException();
+    }
+
+    // time nearest neighbor searches over n random points against PointSET
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int queries = 100;
+        FlatPointSET flat = new FlatPointSET();
+        PointSET brute = new PointSET();
+        for (int i = 0; i < n; i++) {
+            Point2D p = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+            flat.insert(p);
+            brute.insert(p);
+        }
+        StdOut.println("size = " + flat.size() + ", vector API: " + (VECTOR != null));
+
+        Point2D[] targets = new Point2D[queries];
+        for (int i = 0; i < queries; i++)
+            targets[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+
+        // time the second run, once the scans are compiled
+        long start = 0;
+        for (int run = 0; run < 2; run++) {
+            start = System.nanoTime();
+            for (int i = 0; i < queries; i++)
+                flat.nearest(targets[i]);
+        }
+        double flatTime = (System.nanoTime() - start) / 1e9 / queries;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++)
+            brute.nearest(targets[i]);
+        double bruteTime = (System.nanoTime() - start) / 1e9 / queries;
+
+        StdOut.printf("nearest: FlatPointSET %8.3f ms (%.2f GB/s)   PointSET %8.3f ms\n",
+                      flatTime * 1e3, 16.0 * n / flatTime / 1e9, bruteTime * 1e3);
+    }
+}
@@ -0,0 +1,293 @@
+/******************************************************************************
+ *  Compilation:  javac GridIndex.java
+ *  Execution:    java GridIndex input.txt
+ *  Dependencies: Point2D.algs4 RectHV.algs4 In.algs4 StdDraw.algs4 StdOut.algs4
+ *                LinkedList.java
+ *
+ * Set of points in a rectangle (the unit square by default) with the same API as
+ * PointSET and KdTree, indexed by a uniform grid of cells. For uniformly spread
+ * points a query looks at a few cells next to each other in memory instead of
+ * following about log n references down a tree.
+ *
+ * The grid is stored in compressed sparse row (CSR) form: the points are sorted
+ * by cell into the arrays xs[] and ys[], and the points of cell c are those in
+ * [start[c], start[c + 1]). Inserted points that are not in the set yet are
+ * appended after them as pending points, chained by cell from head[c], and the
+ * queries scan the chain of a cell along with its points. When more than
+ * n / PENDING points are pending, the grid is rebuilt from all the points in
+ * linear time (counting sort by cell), with about LOAD points per cell again.
+ * Each rebuild thus follows at least n / PENDING inserts, so a run of inserts
+ * costs amortized O(1) per point however they alternate with queries, and the
+ * cells hold at most LOAD * (1 + 1 / PENDING) points on average in between.
+ *
+ * A range query scans the cells the rectangle overlaps; the cells strictly
+ * inside that block of cells are inside the rectangle, so their points are added
+ * without checks. A nearest neighbor query scans rings of cells around the
+ * query's cell and stops as soon as the nearest point found is closer than the
+ * cells not scanned yet.
+ *
+ * Clustered points fill a few cells with many points and leave most cells
+ * empty, and then a nearest neighbor query away from the clusters scans many
+ * empty rings and KdTree is faster (see GridIndexBenchmark).
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdDraw;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+public class GridIndex {
+    private static final int LOAD = 2;             // points per cell on average
+    private static final int PENDING = 4;          // rebuild when n / PENDING points are pending
+    private static final int MIN_PENDING = 64;     // but never for fewer pending points
+
+    private final double x0, y0, width, height;    // bounds of the grid
+
+    // the points of the grid sorted by cell, then the pending points
+    private double[] xs = new double[MIN_PENDING + 1];
+    private double[] ys = new double[MIN_PENDING + 1];
+    private int[] chain = new int[MIN_PENDING + 1];   // next pending point of the same cell, or -1
+    private int n;                  // number of points in the grid
+    private int pending;            // number of pending points, in [n, n + pending)
+
+    private int gx = 1, gy = 1;     // number of columns and rows of cells
+    private double cw, ch;          // width and height of a cell
+    private int[] start = new int[2];   // points of cell c in [start[c], start[c + 1])
+    private int[] head = { -1 };        // last pending point of cell c, or -1
+
+    // nearest point found so far in a nearest neighbor search
+    private static class Best {
+        private int index = -1;
+        private double distance = Double.POSITIVE_INFINITY;
+    }
+
+    // construct an empty set of points in the unit square
+    public GridIndex() {
+        this(new RectHV(0, 0, 1, 1));
+    }
+
+    // construct an empty set of points inside the given (finite) bounds
+    public GridIndex(RectHV bounds) {
+        checkNull(bounds);
+        if (Double.isInfinite(bounds.width()) || Double.isInfinite(bounds.height()))
+            throw new IllegalArgumentException("bounds must be finite: " + bounds);
+        x0 = bounds.xmin();
+        y0 = bounds.ymin();
+        width = bounds.width();
+        height = bounds.height();
+    }
+
+    // is the set empty?
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // number of points in the set
+    public int size() {
+        return n + pending;
+    }
+
+    // add the point to the set (if it is not already in the set)
+    public void insert(Point2D p) {
+        checkNull(p);
+        double x = p.x(), y = p.y();
+        if (x < x0 || x > x0 + width || y < y0 || y > y0 + height)
+            throw new IllegalArgumentException("point " + p + " is outside the bounds");
+
+        int c = column(x) + gx * row(y);
+        if (inCell(c, x, y)) return;
+        int k = n + pending++;
+        xs[k] = x;
+        ys[k] = y;
+        chain[k] = head[c];
+        head[c] = k;
+        if (pending > Math.max(MIN_PENDING, n / PENDING)) build();
+    }
+
+    // sort all the points by cell into a grid sized for them, with room after
+    // them for the pending points until the next rebuild
+    private void build() {
+        n += pending;
+        pending = 0;
+
+        // about n / LOAD cells, as close to square as the bounds allow
+        double cells = Math.max(1.0, (double) n / LOAD);
+        if (width == 0.0) gx = 1;
+        else if (height == 0.0) gx = (int) cells;
+        else gx = (int) Math.max(1, Math.min(cells, Math.round(Math.sqrt(cells * width / height))));
+        gy = (int) Math.max(1, Math.round(cells / gx));
+        cw = width / gx;
+        ch = height / gy;
+
+        // counting sort by cell
+        int[] cell = new int[n];
+        start = new int[gx * gy + 1];
+        for (int i = 0; i < n; i++) {
+            cell[i] = column(xs[i]) + gx * row(ys[i]);
+            start[cell[i] + 1]++;
+        }
+        for (int c = 0; c < gx * gy; c++)
+            start[c + 1] += start[c];
+        int[] next = Arrays.copyOf(start, gx * gy);
+        double[] sx = new double[n + Math.max(MIN_PENDING, n / PENDING) + 1];
+        double[] sy = new double[sx.length];
+        for (int i = 0; i < n; i++) {
+            int j = next[cell[i]]++;
+            sx[j] = xs[i];
+            sy[j] = ys[i];
+        }
+        xs = sx;
+        ys = sy;
+        chain = new int[sx.length];
+        head = new int[gx * gy];
+        Arrays.fill(head, -1);
+    }
+
+    // column of the cell of x-coordinate x, clamped to the grid
+    private int column(double x) {
+        if (cw == 0.0) return 0;
+        int i = (int) ((x - x0) / cw);
+        return i < 0 ? 0 : i >= gx ? gx - 1 : i;
+    }
+
+    // row of the cell of y-coordinate y, clamped to the grid
+    private int row(double y) {
+        if (ch == 0.0) return 0;
+        int j = (int) ((y - y0) / ch);
+        return j < 0 ? 0 : j >= gy ? gy - 1 : j;
+    }
+
+    // does the set contain point p?
+    public boolean contains(Point2D p) {
+        checkNull(p);
+        double x = p.x(), y = p.y();
+        if (x < x0 || x > x0 + width || y < y0 || y > y0 + height) return false;
+        return inCell(column(x) + gx * row(y), x, y);
+    }
+
+    // is the point (x, y) in cell c, or pending there?
+    private boolean inCell(int c, double x, double y) {
+        for (int i = start[c]; i < start[c + 1]; i++)
+            if (xs[i] == x && ys[i] == y) return true;
+        for (int i = head[c]; i >= 0; i = chain[i])
+            if (xs[i] == x && ys[i] == y) return true;
+        return false;
+    }
+
+    // draw all points to standard draw
+    public void draw() {
+        for (int i = 0; i < n + pending; i++)
+            StdDraw.point(xs[i], ys[i]);
+    }
+
+    // all points that are inside the rectangle (or on the boundary)
+    public Iterable<Point2D> range(RectHV rect) {
+        checkNull(rect);
+        LinkedList<Point2D> rangePoints = new LinkedList<>();
+        if (isEmpty() || rect.xmax() < x0 || rect.xmin() > x0 + width
+                || rect.ymax() < y0 || rect.ymin() > y0 + height) return rangePoints;
+
+        // cells map to columns and rows in order, so a cell strictly between the
+        // first and last column and row of the rectangle is inside it
+        int ilo = column(rect.xmin()), ihi = column(rect.xmax());
+        int jlo = row(rect.ymin()), jhi = row(rect.ymax());
+        for (int j = jlo; j <= jhi; j++) {
+            for (int i = ilo; i <= ihi; i++) {
+                int c = i + gx * j;
+                boolean inside = i > ilo && i < ihi && j > jlo && j < jhi;
+                for (int k = start[c]; k < start[c + 1]; k++)
+                    add(k, rect, inside, rangePoints);
+                for (int k = head[c]; k >= 0; k = chain[k])
+                    add(k, rect, inside, rangePoints);
+            }
+        }
+        return rangePoints;
+    }
+
+    // add point k to the points if it is inside the rectangle (known if inside)
+    private void add(int k, RectHV rect, boolean inside, LinkedList<Point2D> points) {
+        double x = xs[k], y = ys[k];
+        if (inside || x >= rect.xmin() && x <= rect.xmax() && y >= rect.ymin() && y <= rect.ymax())
+            points.add(new Point2D(x, y));
+    }
+
+    // a nearest neighbor in the set to point p; null if the set is empty
+    public Point2D nearest(Point2D p) {
+        checkNull(p);
+        if (isEmpty()) return null;
+
+        double x = p.x(), y = p.y();
+        int ci = column(x), cj = row(y);
+        Best best = new Best();
+        for (int r = 0; ; r++) {
+            // the ring of cells at distance r from the query's cell, row by row
+            for (int j = Math.max(0, cj - r); j <= Math.min(gy - 1, cj + r); j++) {
+                if (j == cj - r || j == cj + r) {
+                    for (int i = Math.max(0, ci - r); i <= Math.min(gx - 1, ci + r); i++)
+                        scan(i + gx * j, x, y, best);
+                }
+                else {
+                    if (ci - r >= 0) scan(ci - r + gx * j, x, y, best);
+                    if (ci + r < gx) scan(ci + r + gx * j, x, y, best);
+                }
+            }
+
+            // distance from the query to the nearest cell outside the rings
+            // scanned so far; stop if there is none or it is farther than best
+            double gap = Double.POSITIVE_INFINITY;
+            if (ci - r > 0) gap = Math.min(gap, x - (x0 + (ci - r) * cw));
+            if (ci + r < gx - 1) gap = Math.min(gap, x0 + (ci + r + 1) * cw - x);
+            if (cj - r > 0) gap = Math.min(gap, y - (y0 + (cj - r) * ch));
+            if (cj + r < gy - 1) gap = Math.min(gap, y0 + (cj + r + 1) * ch - y);
+            if (gap == Double.POSITIVE_INFINITY) break;
+            if (gap > 0 && gap * gap >= best.distance) break;
+        }
+        return new Point2D(xs[best.index], ys[best.index]);
+    }
+
+    // the points of cell c and those pending there
+    private void scan(int c, double x, double y, Best best) {
+        for (int k = start[c]; k < start[c + 1]; k++)
+            scanPoint(k, x, y, best);
+        for (int k = head[c]; k >= 0; k = chain[k])
+            scanPoint(k, x, y, best);
+    }
+
+    private void scanPoint(int k, double x, double y, Best best) {
+        double dx = xs[k] - x;
+        double dy = ys[k] - y;
+        double dist = dx * dx + dy * dy;
+        if (dist < best.distance) {
+            best.distance = dist;
+            best.index = k;
+        }
+    }
+
+    private static void checkNull(Object obj) {
+        if (obj == null) throw new IllegalArgumentException();
+    }
+
+    // read points from a file, print the shape of the grid and draw the points
+    // with the nearest one to the center of the unit square in red
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        GridIndex grid = new GridIndex();
+        while (!in.isEmpty())
+            grid.insert(new Point2D(in.readDouble(), in.readDouble()));
+
+        StdOut.println("size = " + grid.size() + ", " + grid.gx + " x " + grid.gy + " cells, "
+                       + grid.pending + " points pending");
+        StdDraw.enableDoubleBuffering();
+        StdDraw.setPenRadius(0.005);
+        grid.draw();
+        StdDraw.setPenRadius(0.02);
+        StdDraw.setPenColor(StdDraw.RED);
+        Point2D nearest = grid.nearest(new Point2D(0.5, 0.5));
+        if (nearest != null) nearest.draw();
+        StdDraw.show();
+    }
+}
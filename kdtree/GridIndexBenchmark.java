@@ -0,0 +1,93 @@
+/******************************************************************************
+ *  Compilation:  javac GridIndexBenchmark.java
+ *  Execution:    java GridIndexBenchmark n [queries]
+ *  Dependencies: Point2D.algs4 RectHV.algs4 StdOut.algs4 StdRandom.algs4
+ *                GridIndex.java KdTree.java KdTreeGenerator.java
+ *
+ *  Times nearest neighbor and range queries of GridIndex and KdTree on n points
+ *  in the unit square, uniformly spread (like KdTreeGenerator output) and in a
+ *  few tight Gaussian clusters, and checks that both return the same answers.
+ *
+ *  On uniform points the grid reads one or a few neighboring cells per query
+ *  and wins on both queries. On clustered points most cells are empty, so a
+ *  nearest neighbor query away from the clusters scans many rings of empty
+ *  cells and the kd-tree wins; small range queries still favor the grid.
+ *
+ *  % java GridIndexBenchmark 1000000
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class GridIndexBenchmark {
+
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+        StdOut.println("n = " + n + ", queries = " + queries);
+        benchmark("uniform", KdTreeGenerator.uniform(n), queries);
+        benchmark("clustered", KdTreeGenerator.clustered(n), queries);
+    }
+
+    private static void benchmark(String name, Point2D[] points, int queries) {
+        long start = System.nanoTime();
+        KdTree kdtree = new KdTree();
+        for (Point2D p : points)
+            kdtree.insert(p);
+        double kdBuild = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        GridIndex grid = new GridIndex();
+        for (Point2D p : points)
+            grid.insert(p);
+        double gridBuild = (System.nanoTime() - start) / 1e9;
+
+        Point2D[] targets = KdTreeGenerator.uniform(queries);
+        RectHV[] rects = new RectHV[queries];
+        double side = Math.sqrt(10.0 / points.length);   // about 10 uniform points each
+        for (int i = 0; i < queries; i++) {
+            double x = StdRandom.uniform(0.0, 1.0 - side);
+            double y = StdRandom.uniform(0.0, 1.0 - side);
+            rects[i] = new RectHV(x, y, x + side, y + side);
+        }
+
+        // the index and the kd-tree must agree on every query
+        int mismatches = 0;
+        start = System.nanoTime();
+        double[] kdNearest = new double[queries];
+        for (int i = 0; i < queries; i++)
+            kdNearest[i] = targets[i].distanceSquaredTo(kdtree.nearest(targets[i]));
+        double kdNearestTime = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++)
+            if (targets[i].distanceSquaredTo(grid.nearest(targets[i])) != kdNearest[i]) mismatches++;
+        double gridNearestTime = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        int[] kdRange = new int[queries];
+        for (int i = 0; i < queries; i++)
+            for (Point2D p : kdtree.range(rects[i])) kdRange[i]++;
+        double kdRangeTime = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            int count = 0;
+            for (Point2D p : grid.range(rects[i])) count++;
+            if (count != kdRange[i]) mismatches++;
+        }
+        double gridRangeTime = (System.nanoTime() - start) / 1e9;
+
+        StdOut.println(name + ":");
+        StdOut.printf("  build:   KdTree %8.3f s   GridIndex %8.3f s\n", kdBuild, gridBuild);
+        StdOut.printf("  nearest: KdTree %8.3f us  GridIndex %8.3f us\n",
+                      kdNearestTime * 1e6 / queries, gridNearestTime * 1e6 / queries);
+        StdOut.printf("  range:   KdTree %8.3f us  GridIndex %8.3f us\n",
+                      kdRangeTime * 1e6 / queries, gridRangeTime * 1e6 / queries);
+        StdOut.println("  mismatches = " + mismatches);
+    }
+}
@@ -0,0 +1,525 @@
+/******************************************************************************
+ *  Compilation:  javac ImplicitKdTree.java
+ *  Execution:    java ImplicitKdTree input.txt
+ *                java ImplicitKdTree input.bin
+ *  Dependencies: Point2D.algs4 RectHV.algs4 In.algs4 StdOut.algs4 LinkedList.java
+ *                PointFile.java
+ *
+ * Static 2d-tree built in bulk from a set of points, without Node objects.
+ *
+ * KdTree is built by inserting points one at a time, so its shape depends on the
+ * insertion order (sorted input makes it a linked list) and every point costs a
+ * Node, a Point2D and a RectHV. Here all the points are known up front, so the
+ * tree is built balanced: the median of the points by x-coordinate is the root,
+ * the points on each side are split by the median y-coordinate, and so on.
+ *
+ * The tree is implicit in two flat arrays xs[] and ys[]: the subtree of the
+ * points in [lo, hi) has its splitting point at mid = (lo + hi) / 2, its
+ * left/bottom subtree in [lo, mid) and its right/top subtree in [mid + 1, hi).
+ * The medians are found by quickselect, so building takes linear time per level
+ * and O(n log n) in total, and the depth is at most log2(n) + 1.
+ *
+ * Points with the same coordinate as a splitting point may be on either side
+ * of it, so the queries search both subtrees in that case.
+ *
+ * A parallel build is available for large inputs: after the median of a subtree
+ * is in place its two halves are disjoint, so they are built as fork/join tasks
+ * until they are smaller than PARALLEL_CUTOFF points. The sort that removes
+ * duplicates is split the same way. Both builds follow the same layout rules,
+ * so queries return the same points (see ImplicitKdTreeBenchmark).
+ *
+ * The tree is read-only once built, so batches of nearest neighbor queries can
+ * run in parallel. A batch returns, for each query, the index of its nearest
+ * point in the arrays the tree was built from. Each task answers a run of
+ * consecutive queries and starts every search from the previous answer, which
+ * for nearby queries is already close and prunes most of the tree early. To make
+ * consecutive queries nearby, a batch can be sorted along a Morton (Z-order)
+ * curve first.
+ *
+ * load() builds a tree from a binary PointFile without parsing text, and save()
+ * writes a built tree in tree order (with the input indices), which load()
+ * reads back without building it again.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class ImplicitKdTree {
+    private static final int CUTOFF = 16;                 // insertion sort small subarrays
+    private static final int PARALLEL_CUTOFF = 1 << 15;   // build smaller subtrees in one task
+    private static final int BATCH_CUTOFF = 1 << 10;      // queries answered by one task
+
+    private final double[] xs;   // x-coordinates in tree order
+    private final double[] ys;   // y-coordinates in tree order
+    private final int[] ids;     // index of each point in the input arrays
+    private final int size;      // number of distinct points
+
+    // nearest point found so far in a nearest neighbor search
+    private static class Best {
+        private int index = -1;
+        private double distance = Double.POSITIVE_INFINITY;
+    }
+
+    // build a balanced tree of the given points (duplicates are kept once)
+    public ImplicitKdTree(Point2D[] points) {
+        checkNull(points);
+        double[] x = new double[points.length];
+        double[] y = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            checkNull(points[i]);
+            x[i] = points[i].x();
+            y[i] = points[i].y();
+        }
+        xs = x;
+        ys = y;
+        ids = identity(points.length);
+        size = build(false);
+    }
+
+    // build a balanced tree of the points (xs[i], ys[i]); the arrays are copied
+    public ImplicitKdTree(double[] xs, double[] ys) {
+        this(xs, ys, false);
+    }
+
+    // build a balanced tree of the points (xs[i], ys[i]), in parallel on the
+    // common fork/join pool if parallel is true; the arrays are copied
+    public ImplicitKdTree(double[] xs, double[] ys, boolean parallel) {
+        checkNull(xs);
+        checkNull(ys);
+        if (xs.length != ys.length) throw new IllegalArgumentException("arrays differ in length");
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        ids = identity(xs.length);
+        size = build(parallel);
+    }
+
+    // a tree of the given arrays, which it takes over: built from the points if
+    // size is -1, already built with size distinct points otherwise
+    private ImplicitKdTree(double[] xs, double[] ys, int[] ids, int size, boolean parallel) {
+        this.xs = xs;
+        this.ys = ys;
+        this.ids = ids;
+        this.size = size == -1 ? build(parallel) : size;
+    }
+
+    // the tree of the points in a binary PointFile, built in parallel if parallel
+    // is true; a tree written by save() is read as is, without building it
+    public static ImplicitKdTree load(String filename, boolean parallel) {
+        double[][] points = PointFile.read(filename);
+        int[] ids = PointFile.readIndices(filename);
+        int n = points[0].length;
+        if (ids == null) return new ImplicitKdTree(points[0], points[1], identity(n), -1, parallel);
+        return new ImplicitKdTree(points[0], points[1], ids, n, parallel);
+    }
+
+    // write the tree to a binary PointFile that load() reads without building
+    public void save(String filename) {
+        try (PointFile.Writer out = new PointFile.Writer(filename)) {
+            for (int i = 0; i < size; i++)
+                out.write(xs[i], ys[i]);
+            out.writeIndices(Arrays.copyOf(ids, size));
+        }
+    }
+
+    private static int[] identity(int n) {
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++)
+            a[i] = i;
+        return a;
+    }
+
+    // remove the duplicate points and arrange the rest in tree order
+    private int build(boolean parallel) {
+        for (int i = 0; i < xs.length; i++)
+            if (Double.isNaN(xs[i]) || Double.isNaN(ys[i]))
+                throw new IllegalArgumentException("coordinate is NaN");
+
+        // sort by x then y to bring the duplicates together
+        if (parallel) new SortTask(0, xs.length - 1).invoke();
+        else sort(0, xs.length - 1);
+        int distinct = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (distinct > 0 && xs[i] == xs[distinct - 1] && ys[i] == ys[distinct - 1]) continue;
+            xs[distinct] = xs[i];
+            ys[distinct] = ys[i];
+            ids[distinct] = ids[i];
+            distinct++;
+        }
+
+        if (parallel) new BuildTask(0, distinct, 0).invoke();
+        else build(0, distinct, 0);
+        return distinct;
+    }
+
+    // build the subtree of [lo, hi), forking the two halves of large subtrees
+    private class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo;
+        private final int hi;
+        private final int axis;
+
+        BuildTask(int lo, int hi, int axis) {
+            this.lo = lo;
+            this.hi = hi;
+            this.axis = axis;
+        }
+
+        protected void compute() {
+            if (hi - lo <= PARALLEL_CUTOFF) {
+                build(lo, hi, axis);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, axis == 0 ? xs : ys);
+            invokeAll(new BuildTask(lo, mid, 1 - axis), new BuildTask(mid + 1, hi, 1 - axis));
+        }
+    }
+
+    // sort [lo..hi] by x then y, forking the two sides of large partitions
+    private class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo;
+        private final int hi;
+
+        SortTask(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected void compute() {
+            if (hi - lo <= PARALLEL_CUTOFF) {
+                sort(lo, hi);
+                return;
+            }
+            int[] bounds = partition(lo, hi);
+            invokeAll(new SortTask(lo, bounds[0] - 1), new SortTask(bounds[1] + 1, hi));
+        }
+    }
+
+    // put the median of [lo, hi) by the axis coordinate at the middle, then
+    // build the two halves with the other axis
+    private void build(int lo, int hi, int axis) {
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, axis == 0 ? xs : ys);
+            build(lo, mid, 1 - axis);
+            lo = mid + 1;
+            axis = 1 - axis;
+        }
+    }
+
+    // rearrange a[lo..hi] (and the other coordinate along with it) so that a[k]
+    // has the value it would have in sorted order, with nothing larger before it
+    // and nothing smaller after it (3-way partitioning quickselect)
+    private void select(int lo, int hi, int k, double[] a) {
+        while (hi > lo) {
+            double pivot = a[ThreadLocalRandom.current().nextInt(lo, hi + 1)];
+            int lt = lo, i = lo, gt = hi;
+            while (i <= gt) {
+                if (a[i] < pivot) exch(lt++, i++);
+                else if (a[i] > pivot) exch(i, gt--);
+                else i++;
+            }
+            if (k < lt) hi = lt - 1;
+            else if (k > gt) lo = gt + 1;
+            else return;
+        }
+    }
+
+    // quicksort [lo..hi] by x-coordinate, then by y-coordinate
+    private void sort(int lo, int hi) {
+        while (hi - lo >= CUTOFF) {
+            int[] bounds = partition(lo, hi);
+            int lt = bounds[0];
+            int gt = bounds[1];
+            // recurse into the smaller side to bound the stack depth
+            if (lt - lo < hi - gt) {
+                sort(lo, lt - 1);
+                lo = gt + 1;
+            }
+            else {
+                sort(gt + 1, hi);
+                hi = lt - 1;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++)
+            for (int j = i; j > lo && compare(xs[j], ys[j], xs[j - 1], ys[j - 1]) < 0; j--)
+                exch(j, j - 1);
+    }
+
+    // 3-way partition [lo..hi] by x then y around a random point; returns {lt, gt},
+    // the bounds of the points equal to it
+    private int[] partition(int lo, int hi) {
+        int p = ThreadLocalRandom.current().nextInt(lo, hi + 1);
+        double px = xs[p], py = ys[p];
+        int lt = lo, i = lo, gt = hi;
+        while (i <= gt) {
+            int cmp = compare(xs[i], ys[i], px, py);
+            if (cmp < 0) exch(lt++, i++);
+            else if (cmp > 0) exch(i, gt--);
+            else i++;
+        }
+        return new int[] { lt, gt };
+    }
+
+    private static int compare(double x1, double y1, double x2, double y2) {
+        if (x1 != x2) return x1 < x2 ? -1 : 1;
+        if (y1 != y2) return y1 < y2 ? -1 : 1;
+        return 0;
+    }
+
+    private void exch(int i, int j) {
+        double tx = xs[i];
+        xs[i] = xs[j];
+        xs[j] = tx;
+        double ty = ys[i];
+        ys[i] = ys[j];
+        ys[j] = ty;
+        int tid = ids[i];
+        ids[i] = ids[j];
+        ids[j] = tid;
+    }
+
+    // is the set empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // number of points in the set
+    public int size() {
+        return size;
+    }
+
+    // does the set contain point p?
+    public boolean contains(Point2D p) {
+        checkNull(p);
+        return contains(0, size, 0, p.x(), p.y());
+    }
+
+    private boolean contains(int lo, int hi, int axis, double x, double y) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (xs[mid] == x && ys[mid] == y) return true;
+
+            double c = axis == 0 ? x : y;
+            double split = axis == 0 ? xs[mid] : ys[mid];
+            if (c < split) hi = mid;
+            else if (c > split) lo = mid + 1;
+            else {
+                // on the splitting line, the point can be in either subtree
+                if (contains(lo, mid, 1 - axis, x, y)) return true;
+                lo = mid + 1;
+            }
+            axis = 1 - axis;
+        }
+        return false;
+    }
+
+    // all points that are inside the rectangle (or on the boundary)
+    public Iterable<Point2D> range(RectHV rect) {
+        checkNull(rect);
+        LinkedList<Point2D> rangePoints = new LinkedList<>();
+        range(0, size, 0, rect, rangePoints);
+        return rangePoints;
+    }
+
+    // visit a subtree only if the rectangle reaches its side of the splitting line
+    private void range(int lo, int hi, int axis, RectHV rect, LinkedList<Point2D> rangePoints) {
+        if (lo >= hi) return;
+
+        int mid = (lo + hi) >>> 1;
+        double x = xs[mid];
+        double y = ys[mid];
+        if (x >= rect.xmin() && x <= rect.xmax() && y >= rect.ymin() && y <= rect.ymax())
+            rangePoints.add(new Point2D(x, y));
+
+        double split = axis == 0 ? x : y;
+        double min = axis == 0 ? rect.xmin() : rect.ymin();
+        double max = axis == 0 ? rect.xmax() : rect.ymax();
+        if (min <= split) range(lo, mid, 1 - axis, rect, rangePoints);
+        if (max >= split) range(mid + 1, hi, 1 - axis, rect, rangePoints);
+    }
+
+    // a nearest neighbor in the set to point p; null if the set is empty
+    public Point2D nearest(Point2D p) {
+        checkNull(p);
+        if (isEmpty()) return null;
+
+        Best best = new Best();
+        nearest(0, size, 0, p.x(), p.y(), best);
+        return new Point2D(xs[best.index], ys[best.index]);
+    }
+
+    // search the side of the splitting line with the target first; the other side
+    // only if the splitting line is closer than the nearest point found so far
+    private void nearest(int lo, int hi, int axis, double x, double y, Best best) {
+        if (lo >= hi) return;
+
+        int mid = (lo + hi) >>> 1;
+        double dx = xs[mid] - x;
+        double dy = ys[mid] - y;
+        double dist = dx * dx + dy * dy;
+        if (dist < best.distance) {
+            best.distance = dist;
+            best.index = mid;
+        }
+
+        double diff = axis == 0 ? x - xs[mid] : y - ys[mid];
+        if (diff < 0) {
+            nearest(lo, mid, 1 - axis, x, y, best);
+            if (diff * diff < best.distance) nearest(mid + 1, hi, 1 - axis, x, y, best);
+        }
+        else {
+            nearest(mid + 1, hi, 1 - axis, x, y, best);
+            if (diff * diff < best.distance) nearest(lo, mid, 1 - axis, x, y, best);
+        }
+    }
+
+    // nearest neighbors of the query points (qx[i], qy[i]), answered in parallel:
+    // index[i] is the index of the nearest point in the input arrays (for duplicate
+    // input points, one of them) and distance[i] its distance; -1 and infinity if
+    // the set is empty
+    public void nearest(double[] qx, double[] qy, int[] index, double[] distance) {
+        nearest(qx, qy, index, distance, false);
+    }
+
+    // same as nearest(qx, qy, index, distance); the queries are answered in Morton
+    // order if mortonOrder is true and in the given order otherwise. Sorting pays
+    // off for scattered queries against trees much larger than the CPU caches.
+    public void nearest(double[] qx, double[] qy, int[] index, double[] distance,
+                        boolean mortonOrder) {
+        checkNull(qx);
+        checkNull(qy);
+        checkNull(index);
+        checkNull(distance);
+        int m = qx.length;
+        if (qy.length != m || index.length != m || distance.length != m)
+            throw new IllegalArgumentException("arrays differ in length");
+
+        int[] order = mortonOrder ? mortonOrder(qx, qy) : identity(m);
+        new BatchTask(qx, qy, index, distance, order, 0, m).invoke();
+    }
+
+    // answer the queries order[lo..hi) in one task, or split them in two
+    private class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final double[] qx, qy;
+        private final int[] index;
+        private final double[] distance;
+        private final int[] order;
+        private final int lo, hi;
+
+        BatchTask(double[] qx, double[] qy, int[] index, double[] distance, int[] order,
+                  int lo, int hi) {
+            this.qx = qx;
+            this.qy = qy;
+            this.index = index;
+            this.distance = distance;
+            this.order = order;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected void compute() {
+            if (hi - lo > BATCH_CUTOFF) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new BatchTask(qx, qy, index, distance, order, lo, mid),
+                          new BatchTask(qx, qy, index, distance, order, mid, hi));
+                return;
+            }
+
+            Best best = new Best();
+            for (int i = lo; i < hi; i++) {
+                int q = order[i];
+                double x = qx[q];
+                double y = qy[q];
+                if (Double.isNaN(x) || Double.isNaN(y))
+                    throw new IllegalArgumentException("coordinate is NaN");
+
+                // the previous answer bounds the distance to the nearest point
+                if (best.index != -1) {
+                    double dx = xs[best.index] - x;
+                    double dy = ys[best.index] - y;
+                    best.distance = dx * dx + dy * dy;
+                }
+                nearest(0, size, 0, x, y, best);
+
+                index[q] = best.index == -1 ? -1 : ids[best.index];
+                distance[q] = Math.sqrt(best.distance);
+            }
+        }
+    }
+
+    // indices of the query points sorted along the Morton (Z-order) curve of their
+    // bounding box, so that consecutive queries are close to each other
+    private static int[] mortonOrder(double[] qx, double[] qy) {
+        int m = qx.length;
+        double xmin = Double.POSITIVE_INFINITY, xmax = Double.NEGATIVE_INFINITY;
+        double ymin = Double.POSITIVE_INFINITY, ymax = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < m; i++) {
+            xmin = Math.min(xmin, qx[i]);
+            xmax = Math.max(xmax, qx[i]);
+            ymin = Math.min(ymin, qy[i]);
+            ymax = Math.max(ymax, qy[i]);
+        }
+        double xscale = xmax > xmin ? 32767 / (xmax - xmin) : 0;
+        double yscale = ymax > ymin ? 32767 / (ymax - ymin) : 0;
+
+        // sort (code, index) pairs packed in longs
+        long[] keys = new long[m];
+        for (int i = 0; i < m; i++) {
+            int cx = (int) ((qx[i] - xmin) * xscale);
+            int cy = (int) ((qy[i] - ymin) * yscale);
+            keys[i] = (long) interleave(cx, cy) << 32 | i;
+        }
+        Arrays.parallelSort(keys);
+
+        int[] order = new int[m];
+        for (int i = 0; i < m; i++)
+            order[i] = (int) keys[i];
+        return order;
+    }
+
+    // Morton code of two 15-bit coordinates: the bits of x and y alternated
+    private static int interleave(int x, int y) {
+        return spread(x) | spread(y) << 1;
+    }
+
+    // spread the 16 low bits of v to the even bits
+    private static int spread(int v) {
+        v &= 0xffff;
+        v = (v | v << 8) & 0x00ff00ff;
+        v = (v | v << 4) & 0x0f0f0f0f;
+        v = (v | v << 2) & 0x33333333;
+        v = (v | v << 1) & 0x55555555;
+        return v;
+    }
+
+    private static void checkNull(Object obj) {
+        if (obj == null) throw new IllegalArgumentException();
+    }
+
+    // build the tree from a text or binary (.bin) file of points and print the
+    // time it took and the nearest point to the center of the unit square
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        ImplicitKdTree kdtree;
+        if (args[0].endsWith(".bin")) kdtree = load(args[0], true);
+        else {
+            In in = new In(args[0]);
+            LinkedList<Point2D> points = new LinkedList<>();
+            while (!in.isEmpty())
+                points.add(new Point2D(in.readDouble(), in.readDouble()));
+            kdtree = new ImplicitKdTree(points.toArray(new Point2D[0]));
+        }
+        StdOut.printf("size = %d, built in %.3f s\n", kdtree.size(), (System.nanoTime() - start) / 1e9);
+        StdOut.println("nearest to (0.5, 0.5): " + kdtree.nearest(new Point2D(0.5, 0.5)));
+    }
+}
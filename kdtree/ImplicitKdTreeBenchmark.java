@@ -0,0 +1,64 @@
+/******************************************************************************
+ *  Compilation:  javac ImplicitKdTreeBenchmark.java
+ *  Execution:    java ImplicitKdTreeBenchmark n [trials]
+ *  Dependencies: Point2D.algs4 StdOut.algs4 StdRandom.algs4
+ *                ImplicitKdTree.java
+ *
+ *  Times the sequential and the parallel (fork/join) bulk builds of
+ *  ImplicitKdTree on n random points in the unit square, and checks that both
+ *  trees return the same nearest neighbors for random queries.
+ *
+ *  The parallel build forks the two halves of every subtree, so its speedup is
+ *  bounded by the sequential quickselect of the first levels (about 2n element
+ *  moves on the critical path against n log n in total); expect it to grow with
+ *  the number of cores until memory bandwidth is saturated.
+ *
+ *  % java -Xmx8g ImplicitKdTreeBenchmark 50000000 3
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+public class ImplicitKdTreeBenchmark {
+
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = StdRandom.uniform(0.0, 1.0);
+            ys[i] = StdRandom.uniform(0.0, 1.0);
+        }
+
+        StdOut.println("n = " + n + ", cores = " + Runtime.getRuntime().availableProcessors());
+        ImplicitKdTree sequential = null;
+        ImplicitKdTree parallel = null;
+        double bestSequential = Double.POSITIVE_INFINITY;
+        double bestParallel = Double.POSITIVE_INFINITY;
+        for (int t = 0; t < trials; t++) {
+            long start = System.nanoTime();
+            sequential = new ImplicitKdTree(xs, ys, false);
+            bestSequential = Math.min(bestSequential, (System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            parallel = new ImplicitKdTree(xs, ys, true);
+            bestParallel = Math.min(bestParallel, (System.nanoTime() - start) / 1e9);
+        }
+        StdOut.printf("sequential build: %8.3f s\n", bestSequential);
+        StdOut.printf("parallel build:   %8.3f s\n", bestParallel);
+        StdOut.printf("speedup:          %8.2f\n", bestSequential / bestParallel);
+
+        // both trees must agree on every query
+        int mismatches = 0;
+        for (int i = 0; i < 100000; i++) {
+            Point2D query = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+            if (query.distanceSquaredTo(sequential.nearest(query))
+                    != query.distanceSquaredTo(parallel.nearest(query))) mismatches++;
+        }
+        StdOut.println("nearest mismatches = " + mismatches);
+    }
+}
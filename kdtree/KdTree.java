@@ -1,29 +1,161 @@
 /******************************************************************************
  *  Compilation:  javac KdTree.java
  *  Execution:    java KdTree
- *  Dependencies: Point2D.algs4 RectHV.algs StdDraw.algs4 In.algs4 LinkedList.java
+ *  Dependencies: Point2D.algs4 RectHV.algs StdDraw.algs4 In.algs4 MaxPQ.algs4 Stack.algs4
+ *                StdRandom.algs4 LinkedList.java
  *
  * Data type to represent a set of points in the unit square using a 2d-tree to
  * support efficient range search (find all of the points contained in a query rectangle)
  * and nearest-neighbor search (find a closest point to a query point).
  *
+ * Other bounds can be given for the root rectangle instead of the unit square, or
+ * none at all (KdTree.UNBOUNDED), so points need not be normalized first. Points
+ * outside the bounds are rejected, since their nodes would get wrong rectangles.
+ * The tree also keeps the bounding box of the points inserted so far, updated in
+ * O(1) per insert, and the queries clip every node's rectangle to it: the points
+ * of a subtree are in both, and the clipped rectangle is finite and tighter even
+ * when the bounds are not.
+ *
+ * The nearest neighbor search is iterative. It walks down on the query's side of
+ * each splitting line and pushes the far child on an explicit stack, with the
+ * offsets of its cell from the query along x and y, which are the distances to
+ * the splitting lines crossed to reach it. The squared offsets bound the squared
+ * distance to every point of the far subtree, so it is pushed, and searched when
+ * popped, only if that bound is smaller than the best distance so far, kept as a
+ * double.
+ *
+ * Queries can count their work: when the JVM is started with -Dkdtree.stats=true,
+ * range(), rangeCount() and nearest() record the nodes they visit, the points
+ * they compare with the query and the deepest node they reach, available until
+ * the next query. STATS is a static final constant, so with the switch off the
+ * JIT compiles the counting away. height(), averageDepth() and nodes() describe
+ * the shape of the tree.
+ *
+ * An approximate nearest neighbor search bounds the work of a query: with a
+ * factor epsilon, a subtree is skipped when the distance to its rectangle times
+ * (1 + epsilon) is at least the distance to the nearest point found so far, and
+ * the search stops after visiting maxNodes nodes. The point returned is at most
+ * (1 + errorBound) times farther than the nearest point, where errorBound is
+ * computed from the closest subtree that was skipped (at most epsilon when the
+ * node budget was not exhausted, 0 if the answer is known to be exact).
+ *
  * A 2d-tree is a generalization of a BST to two-dimensional keys. The idea is to
  * build a BST with points in the nodes, using the x- and y-coordinates of the points
- * as keys in strictly alternating sequence.
+ * as keys in strictly alternating sequence. Equal keys are ordered by the other
+ * coordinate, so points on a line parallel to an axis split evenly too.
+ *
+ * Points can also be deleted, and the tree rebalances itself like a scapegoat
+ * tree. A deleted point leaves its node in place, marked as deleted, so the
+ * rectangles of the other nodes stay valid. When an insert makes the new node
+ * deeper than log(n) / log(1 / ALPHA), the deepest ancestor on its path whose
+ * larger subtree holds more than ALPHA of its nodes is rebuilt as a balanced
+ * subtree of its live points (median splits). When half of the nodes are
+ * deleted, the whole tree is rebuilt. The medians are found by quickselect, in
+ * expected linear time per level, so rebuilding m nodes takes O(m log m) time;
+ * updates thus cost amortized O(log^2 n), and the depth stays O(log n) under
+ * any mix of inserts and deletes.
  ******************************************************************************/
 
 import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.MaxPQ;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.Stack;
 import edu.princeton.cs.algs4.StdDraw;
+import edu.princeton.cs.algs4.StdRandom;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.function.Consumer;
 
 public class KdTree {
     private enum Separator {VERTICAL, HORIZONTAL} // 2d-tree nodes vertical or horizontal
 
+    private static final double ALPHA = 0.7;       // scapegoat balance factor, 1/2 < ALPHA < 1
+    private static final int STACK = 64;           // initial stack size of nearest()
+
+
+    // count the work of each query (java -Dkdtree.stats=true)
+    private static final boolean STATS = Boolean.getBoolean("kdtree.stats");
+
+    // bounds that accept any point
+    public static final RectHV UNBOUNDED = new RectHV(Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                                                      Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    private final RectHV bounds;   // rectangle of the root, every point is inside it
     private Node root;     // root of 2d-tree
-    private int size;      // size of 2d-tree
+    private int size;      // size of 2d-tree (points not deleted)
+    private int deleted;   // number of nodes of deleted points
+
+    // work of the last query, counted if STATS is true
+    private long nodesVisited;
+    private long pointsTested;
+    private int maxDepth;
+
+    // bounding box of the points inserted so far (empty while xmin > xmax)
+    private double xmin = Double.POSITIVE_INFINITY;
+    private double ymin = Double.POSITIVE_INFINITY;
+    private double xmax = Double.NEGATIVE_INFINITY;
+    private double ymax = Double.NEGATIVE_INFINITY;
+
+    // result of an approximate nearest neighbor search
+    public static class ApproximateNearest {
+        private final Point2D point;
+        private final double distance;
+        private final double errorBound;
+        private final int nodesVisited;
+
+        private ApproximateNearest(Point2D point, double distance, double errorBound, int nodesVisited) {
+            this.point = point;
+            this.distance = distance;
+            this.errorBound = errorBound;
+            this.nodesVisited = nodesVisited;
+        }
+
+        // the point found; null if the set is empty
+        public Point2D point() {
+            return point;
+        }
+
+        // distance from the query point to the point found
+        public double distance() {
+            return distance;
+        }
+
+        // the point found is at most (1 + errorBound) times farther than a nearest
+        // neighbor; infinity if nothing bounds it
+        public double errorBound() {
+            return errorBound;
+        }
+
+        // is the point found a nearest neighbor?
+        public boolean isExact() {
+            return errorBound == 0.0;
+        }
+
+        // number of nodes the search visited
+        public int nodesVisited() {
+            return nodesVisited;
+        }
+    }
+
+    // state of an approximate nearest neighbor search
+    private static class Search {
+        private final Point2D target;
+        private final double factor;     // (1 + epsilon)^2
+        private final int maxNodes;
+        private Point2D closest;
+        private double closestDist = Double.POSITIVE_INFINITY;
+        private double skippedDist = Double.POSITIVE_INFINITY;   // closest skipped rectangle
+        private int visited;
+
+        Search(Point2D target, double epsilon, int maxNodes) {
+            this.target = target;
+            this.factor = (1 + epsilon) * (1 + epsilon);
+            this.maxNodes = maxNodes;
+        }
+    }
 
     private static class Node {
         private final Point2D point;   // the point
@@ -31,11 +163,16 @@ public class KdTree {
         private Node leftBottom;       // the left/bottom subtree
         private Node rightTop;         // the right/top subtree
         private final Separator sepr;  // vertical or horizontal
+        private int count;             // number of points in the subtree rooted here
+        private int nodes;             // number of nodes in the subtree, deleted ones included
+        private boolean deleted;       // was the point deleted?
 
         Node(Point2D p, RectHV rect, Separator sepr) {
             point = p;
             this.rect = rect;
             this.sepr = sepr;
+            count = 1;
+            nodes = 1;
         }
 
         // each node is aligned opposite to the parent node
@@ -47,13 +184,16 @@ public class KdTree {
         // the relation between a given point and this node
         // true if left or bottom, false otherwise
         public boolean isLeftBottom(Point2D p) {
-            return sepr == Separator.VERTICAL ?
-                   p.x() < point.x() : p.y() < point.y();
+            return less(p, point, sepr == Separator.VERTICAL);
         }
 
         // get the rectangle of a given point using this node's rectangle
         public RectHV getRect(Point2D p) {
-            boolean dir = isLeftBottom(p);
+            return getRect(isLeftBottom(p));
+        }
+
+        // the rectangle of the left/bottom subtree if dir is true, of the right/top otherwise
+        public RectHV getRect(boolean dir) {
             if (sepr == Separator.VERTICAL) {
                 if (dir)
                     return new RectHV(rect.xmin(), rect.ymin(), point.x(),
@@ -73,15 +213,22 @@ public class KdTree {
         }
     }
 
-    // construct an empty set of points
+    // construct an empty set of points in the unit square
     public KdTree() {
+        this(new RectHV(0, 0, 1, 1));
+    }
+
+    // construct an empty set of points inside the given bounds
+    public KdTree(RectHV bounds) {
+        checkNull(bounds);
+        this.bounds = bounds;
         root = null;
         size = 0;
     }
 
     // is the set empty?
     public boolean isEmpty() {
-        return root == null;
+        return size == 0;
     }
 
     // number of points in the set
@@ -89,35 +236,178 @@ public class KdTree {
         return size;
     }
 
+    // bounding box of the points inserted so far; null if none were inserted
+    public RectHV boundingBox() {
+        return xmin > xmax ? null : new RectHV(xmin, ymin, xmax, ymax);
+    }
+
     // add the point to the set (if it is not already in the set)
     public void insert(Point2D p) {
         checkNull(p);
-        if (this.contains(p)) return;  // return if point p is already there
+        if (!bounds.contains(p))
+            throw new IllegalArgumentException("point " + p + " is outside the bounds " + bounds);
+        xmin = Math.min(xmin, p.x());
+        ymin = Math.min(ymin, p.y());
+        xmax = Math.max(xmax, p.x());
+        ymax = Math.max(ymax, p.y());
+
+        // if the tree is empty, make a new node with the bounds as its rectangle
+        if (root == null) {
+            root = new Node(p, bounds, Separator.VERTICAL);
+            size = 1;
+            return;
+        }
 
-        root = insert(root, p, null);
-    }
+        // walk down once, remembering the path to the new node
+        ArrayList<Node> path = new ArrayList<>();
+        Node node = root;
+        while (true) {
+            path.add(node);
+            if (p.equals(node.point)) {
+                // return if point p is already there, bring it back if it was deleted
+                if (!node.deleted) return;
+                node.deleted = false;
+                deleted--;
+                size++;
+                for (Node n : path) n.count++;
+                return;
+            }
 
-    // insert a new point by constructing its new node
-    private Node insert(Node node, Point2D p, Node parent) {
-        // if the tree is empty, make a new node with unit rectangle (0,0,1,1)
-        // else make a new node using getRect method
-        if (root == null) {
-            size++;
-            return new Node(p, new RectHV(0, 0, 1, 1), Separator.VERTICAL);
+            boolean dir = node.isLeftBottom(p);
+            Node child = dir ? node.leftBottom : node.rightTop;
+            if (child == null) {
+                // make a new node using getRect method
+                child = new Node(p, node.getRect(dir), node.nextSepr());
+                if (dir) node.leftBottom = child;
+                else node.rightTop = child;
+                break;
+            }
+            node = child;
         }
-        else if (node == null) {
-            size++;
-            return new Node(p, parent.getRect(p), parent.nextSepr());
+
+        size++;
+        for (Node n : path) {
+            n.count++;
+            n.nodes++;
         }
 
-        if (node.isLeftBottom(p))
-            node.leftBottom = insert(node.leftBottom, p, node);
-        else
-            node.rightTop = insert(node.rightTop, p, node);
+        // the new node is at depth path.size(); if the tree is too deep there,
+        // rebuild the deepest ancestor that is out of balance (the scapegoat)
+        if (path.size() > maxDepth(root.nodes)) {
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node a = path.get(i);
+                int larger = Math.max(nodes(a.leftBottom), nodes(a.rightTop));
+                if (larger > ALPHA * a.nodes) {
+                    Node rebuilt = rebuild(a);
+                    int removed = a.nodes - nodes(rebuilt);
+                    if (i == 0) root = rebuilt;
+                    else if (path.get(i - 1).leftBottom == a) path.get(i - 1).leftBottom = rebuilt;
+                    else path.get(i - 1).rightTop = rebuilt;
+                    for (int j = 0; j < i; j++)
+                        path.get(j).nodes -= removed;
+                    break;
+                }
+            }
+        }
+    }
+
+    // delete the point from the set (if it is in the set)
+    public void delete(Point2D p) {
+        checkNull(p);
+
+        ArrayList<Node> path = new ArrayList<>();
+        Node node = root;
+        while (node != null) {
+            path.add(node);
+            if (p.equals(node.point)) break;
+            node = node.isLeftBottom(p) ? node.leftBottom : node.rightTop;
+        }
+        if (node == null || node.deleted) return;
+
+        node.deleted = true;
+        deleted++;
+        size--;
+        for (Node n : path) n.count--;
+
+        // rebuild the whole tree when half of its nodes are deleted
+        if (deleted > size) root = rebuild(root);
+    }
+
+    // max depth of a balanced tree of n nodes: log(n) / log(1 / ALPHA)
+    private static double maxDepth(int n) {
+        return Math.log(n) / Math.log(1 / ALPHA) + 1;
+    }
 
+    private static int nodes(Node node) {
+        return node == null ? 0 : node.nodes;
+    }
+
+    // a balanced subtree of the points of the subtree rooted at node that are not
+    // deleted, with the same rectangle and separator; null if there are none
+    private Node rebuild(Node node) {
+        Point2D[] points = new Point2D[node.count];
+        int n = collect(node, points, 0);
+        deleted -= node.nodes - n;
+        return build(points, 0, n, node.rect, node.sepr);
+    }
+
+    // put the points of the subtree that are not deleted in points[from..]
+    private int collect(Node node, Point2D[] points, int from) {
+        if (node == null) return from;
+
+        if (!node.deleted) points[from++] = node.point;
+        from = collect(node.leftBottom, points, from);
+        return collect(node.rightTop, points, from);
+    }
+
+    // balanced subtree of points[lo, hi): the median in the order of isLeftBottom()
+    // is the root; points smaller than it on the left/bottom, the rest on the right/top
+    private Node build(Point2D[] points, int lo, int hi, RectHV rect, Separator sepr) {
+        if (lo >= hi) return null;
+
+        int mid = (lo + hi) >>> 1;
+        select(points, lo, hi - 1, mid, sepr == Separator.VERTICAL);
+
+        Node node = new Node(points[mid], rect, sepr);
+        node.leftBottom = build(points, lo, mid, node.getRect(true), node.nextSepr());
+        node.rightTop = build(points, mid + 1, hi, node.getRect(false), node.nextSepr());
+        node.count = hi - lo;
+        node.nodes = hi - lo;
         return node;
     }
 
+    // put in points[k] the point that belongs there in the order of less(), the
+    // smaller points of [lo..hi] before it and the larger ones after it
+    // (3-way partitioning quickselect, expected linear time)
+    private static void select(Point2D[] points, int lo, int hi, int k, boolean vertical) {
+        while (hi > lo) {
+            Point2D pivot = points[StdRandom.uniform(lo, hi + 1)];
+            int lt = lo, i = lo, gt = hi;
+            while (i <= gt) {
+                if (less(points[i], pivot, vertical)) exch(points, lt++, i++);
+                else if (less(pivot, points[i], vertical)) exch(points, i, gt--);
+                else i++;
+            }
+            if (k < lt) hi = lt - 1;
+            else if (k > gt) lo = gt + 1;
+            else return;
+        }
+    }
+
+    private static void exch(Point2D[] points, int i, int j) {
+        Point2D t = points[i];
+        points[i] = points[j];
+        points[j] = t;
+    }
+
+    // is p before q by x then y if vertical, by y then x otherwise? Points with
+    // the same coordinate as a node go to either side by the other one, so a line
+    // of points parallel to an axis is still split in half at every level
+    private static boolean less(Point2D p, Point2D q, boolean vertical) {
+        double a = vertical ? p.x() : p.y(), b = vertical ? q.x() : q.y();
+        if (a != b) return a < b;
+        return vertical ? p.y() < q.y() : p.x() < q.x();
+    }
 
     // does the set contain point p?
     public boolean contains(Point2D p) {
@@ -129,75 +419,384 @@ public class KdTree {
     private Point2D get(Node node, Point2D p) {
         if (node == null) return null;
 
-        if (p.equals(node.point)) return p;
+        if (p.equals(node.point)) return node.deleted ? null : p;
         else if (node.isLeftBottom(p)) return get(node.leftBottom, p);
         else return get(node.rightTop, p);
     }
 
     // all points that are inside the rectangle (or on the boundary)
     public Iterable<Point2D> range(RectHV rect) {
-        checkNull(rect);
-        if (root == null) return null;
+        LinkedList<Point2D> rangePoints = new LinkedList<>();
+        range(rect, rangePoints::add);
+        return rangePoints;
+    }
 
-        return range(root, rect, new LinkedList<>());
+    // pass every point inside the rectangle (or on the boundary) to the visitor,
+    // without collecting them
+    public void range(RectHV rect, Consumer<Point2D> visitor) {
+        checkNull(rect);
+        checkNull(visitor);
+        if (STATS) resetStats();
+        range(root, rect, visitor, 0);
     }
 
     // given a rectangle, check if it intersects with any of the nodes in the 2d-tree recursively
-    // if it does, check if its point inside the rectangle
-    private LinkedList<Point2D> range(Node node, RectHV rect, LinkedList<Point2D> rangePoints) {
-        if (node == null) return rangePoints;
+    // if it does, check if its point inside the rectangle. If the node's rectangle is inside
+    // the query rectangle, all the points of the subtree are in range without any check
+    private void range(Node node, RectHV rect, Consumer<Point2D> visitor, int depth) {
+        if (node == null) return;
+        if (STATS) visit(depth);
 
-        if (rect.intersects(node.rect)) {
-            if (rect.contains(node.point))
-                rangePoints.add(node.point);
-            rangePoints = range(node.leftBottom, rect, rangePoints);
-            rangePoints = range(node.rightTop, rect, rangePoints);
+        if (contains(rect, node)) {
+            visitAll(node, visitor, depth);
+        }
+        else if (intersects(rect, node)) {
+            if (STATS && !node.deleted) pointsTested++;
+            if (!node.deleted && rect.contains(node.point))
+                visitor.accept(node.point);
+            range(node.leftBottom, rect, visitor, depth + 1);
+            range(node.rightTop, rect, visitor, depth + 1);
         }
+    }
 
-        return rangePoints;
+    private void visitAll(Node node, Consumer<Point2D> visitor, int depth) {
+        if (node == null) return;
+        if (STATS) visit(depth);
+
+        if (!node.deleted) visitor.accept(node.point);
+        visitAll(node.leftBottom, visitor, depth + 1);
+        visitAll(node.rightTop, visitor, depth + 1);
+    }
+
+    // number of points that are inside the rectangle (or on the boundary)
+    public int rangeCount(RectHV rect) {
+        checkNull(rect);
+        if (STATS) resetStats();
+        return rangeCount(root, rect, 0);
+    }
+
+    // same as range, but a subtree inside the query rectangle adds its size
+    private int rangeCount(Node node, RectHV rect, int depth) {
+        if (node == null) return 0;
+        if (STATS) visit(depth);
+
+        if (contains(rect, node)) return node.count;
+        if (!intersects(rect, node)) return 0;
+
+        if (STATS && !node.deleted) pointsTested++;
+        int count = !node.deleted && rect.contains(node.point) ? 1 : 0;
+        return count + rangeCount(node.leftBottom, rect, depth + 1)
+                + rangeCount(node.rightTop, rect, depth + 1);
+    }
+
+    // the node's rectangle clipped to the bounding box of the inserted points
+    private double cellXmin(Node node) {
+        return Math.max(node.rect.xmin(), xmin);
+    }
+
+    private double cellYmin(Node node) {
+        return Math.max(node.rect.ymin(), ymin);
+    }
+
+    private double cellXmax(Node node) {
+        return Math.min(node.rect.xmax(), xmax);
+    }
+
+    private double cellYmax(Node node) {
+        return Math.min(node.rect.ymax(), ymax);
+    }
+
+    // is the node's clipped rectangle inside the rectangle (or on its boundary)?
+    private boolean contains(RectHV rect, Node node) {
+        return rect.xmin() <= cellXmin(node) && cellXmax(node) <= rect.xmax()
+                && rect.ymin() <= cellYmin(node) && cellYmax(node) <= rect.ymax();
+    }
+
+    // does the node's clipped rectangle intersect the rectangle?
+    private boolean intersects(RectHV rect, Node node) {
+        return rect.xmax() >= cellXmin(node) && cellXmax(node) >= rect.xmin()
+                && rect.ymax() >= cellYmin(node) && cellYmax(node) >= rect.ymin();
+    }
+
+    // squared distance from the point to the node's clipped rectangle
+    private double distanceSquared(Node node, Point2D p) {
+        double dx = 0.0, dy = 0.0;
+        if (p.x() < cellXmin(node)) dx = p.x() - cellXmin(node);
+        else if (p.x() > cellXmax(node)) dx = p.x() - cellXmax(node);
+        if (p.y() < cellYmin(node)) dy = p.y() - cellYmin(node);
+        else if (p.y() > cellYmax(node)) dy = p.y() - cellYmax(node);
+        return dx * dx + dy * dy;
     }
 
     // a nearest neighbor in the set to point p; null if the set is empty
     public Point2D nearest(Point2D p) {
         checkNull(p);
-        if (root == null) return null;
+        if (isEmpty()) return null;
+
+        double x = p.x(), y = p.y();
+        Point2D closest = null;
+        double closestDist = Double.POSITIVE_INFINITY;
+
+        // subtrees still to search, with the offsets of their cells from p along x
+        // and y: the distances to the splitting lines crossed to reach them, so the
+        // squared distance to the cell is at least dx * dx + dy * dy
+        Node[] stack = new Node[STACK];
+        double[] offX = new double[STACK];
+        double[] offY = new double[STACK];
+        int[] depths = STATS ? new int[STACK] : null;
+        if (STATS) resetStats();
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            top--;
+            Node node = stack[top];
+            double dx = offX[top], dy = offY[top];
+            int depth = STATS ? depths[top] : 0;
+            if (dx * dx + dy * dy >= closestDist) continue;
+
+            // walk down on p's side, leaving the far children on the stack
+            for (; node != null; depth++) {
+                if (STATS) {
+                    visit(depth);
+                    if (!node.deleted) pointsTested++;
+                }
+                double px = node.point.x() - x;
+                double py = node.point.y() - y;
+                double dist = px * px + py * py;
+                if (!node.deleted && dist < closestDist) {
+                    closest = node.point;
+                    closestDist = dist;
+                }
+
+                // the far child's cell is across the splitting line, at distance
+                // |diff| along the separator's axis
+                boolean vertical = node.sepr == Separator.VERTICAL;
+                double diff = vertical ? px : py;
+                Node far;
+                if (diff > 0) {
+                    far = node.rightTop;
+                    node = node.leftBottom;
+                }
+                else {
+                    far = node.leftBottom;
+                    node = node.rightTop;
+                }
+                if (far == null) continue;
+                double farX = vertical ? diff : dx;
+                double farY = vertical ? dy : diff;
+                if (farX * farX + farY * farY < closestDist) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                        offX = Arrays.copyOf(offX, 2 * top);
+                        offY = Arrays.copyOf(offY, 2 * top);
+                        if (STATS) depths = Arrays.copyOf(depths, 2 * top);
+                    }
+                    stack[top] = far;
+                    offX[top] = farX;
+                    offY[top] = farY;
+                    if (STATS) depths[top] = depth + 1;
+                    top++;
+                }
+            }
+        }
 
-        return isEmpty() ? null : nearest(root, p, root.point);
+        return closest;
     }
 
-    // if the distance between the target point and node's rectangle is smaller than
-    // minimum distance. If it is, check the distance between this node's point and target point
-    // if not, do not check its subtrees as they will be far away
-    private Point2D nearest(Node node, Point2D target, Point2D closestPoint) {
-        if (node == null) return closestPoint;
+    // a point at most (1 + epsilon) times farther from p than its nearest neighbor,
+    // found by visiting at most maxNodes nodes (the bound achieved is reported if
+    // the budget runs out first)
+    public ApproximateNearest nearest(Point2D p, double epsilon, int maxNodes) {
+        checkNull(p);
+        if (!(epsilon >= 0)) throw new IllegalArgumentException("epsilon must be non-negative: " + epsilon);
+        if (maxNodes < 1) throw new IllegalArgumentException("maxNodes must be positive: " + maxNodes);
+
+        Search search = new Search(p, epsilon, maxNodes);
+        nearest(root, search);
+
+        // a nearest neighbor is the point found or in a skipped subtree, so it is at
+        // distance at least min(closestDist, skippedDist)
+        double errorBound = 0.0;
+        if (search.closest == null)
+            errorBound = isEmpty() ? 0.0 : Double.POSITIVE_INFINITY;
+        else if (search.skippedDist < search.closestDist)
+            errorBound = Math.sqrt(search.closestDist / search.skippedDist) - 1;
+        double distance = search.closest == null ? Double.POSITIVE_INFINITY : Math.sqrt(search.closestDist);
+        return new ApproximateNearest(search.closest, distance, errorBound, search.visited);
+    }
+
+    // skip the subtrees whose rectangle is no closer than the nearest point found so
+    // far, with the test relaxed by the factor, and stop at the node budget;
+    // remembers the closest rectangle it skipped
+    private void nearest(Node node, Search search) {
+        if (node == null) return;
+
+        double rectDist = distanceSquared(node, search.target);
+        if (rectDist >= search.closestDist) return;
+        if (rectDist * search.factor >= search.closestDist || search.visited == search.maxNodes) {
+            search.skippedDist = Math.min(search.skippedDist, rectDist);
+            return;
+        }
+
+        search.visited++;
+        double dist = node.point.distanceSquaredTo(search.target);
+        if (!node.deleted && dist < search.closestDist) {
+            search.closest = node.point;
+            search.closestDist = dist;
+        }
 
-        double closestDist = closestPoint.distanceSquaredTo(target);
-        if (node.rect.distanceSquaredTo(target) < closestDist) {
-            if (node.point.distanceSquaredTo(target) < closestDist)
-                closestPoint = node.point;
+        if (node.isLeftBottom(search.target)) {
+            nearest(node.leftBottom, search);
+            nearest(node.rightTop, search);
+        }
+        else {
+            nearest(node.rightTop, search);
+            nearest(node.leftBottom, search);
+        }
+    }
+
+    // the k nearest neighbors in the set to point p, nearest first
+    // (fewer if the set has less than k points)
+    public Iterable<Point2D> nearest(Point2D p, int k) {
+        checkNull(p);
+        if (k < 1) throw new IllegalArgumentException("k must be positive: " + k);
+
+        // bounded max-heap: the farthest of the k nearest points found so far on top
+        MaxPQ<Point2D> closest = new MaxPQ<>(k + 1, p.distanceToOrder());
+        nearest(root, p, k, closest);
+
+        Stack<Point2D> nearestPoints = new Stack<>();
+        while (!closest.isEmpty())
+            nearestPoints.push(closest.delMax());
+        return nearestPoints;
+    }
+
+    // skip the subtrees whose rectangle is no closer than the farthest of the k
+    // nearest points once k points were found
+    private void nearest(Node node, Point2D target, int k, MaxPQ<Point2D> closest) {
+        if (node == null) return;
+        if (closest.size() == k
+                && distanceSquared(node, target) >= closest.max().distanceSquaredTo(target))
+            return;
 
-            // it the target point on the left or bottom of this node,
-            // check left/bottom subtrees first
-            if (node.isLeftBottom(target)) {
-                closestPoint = nearest(node.leftBottom, target, closestPoint);
-                closestPoint = nearest(node.rightTop, target, closestPoint);
+        if (!node.deleted) {
+            if (closest.size() < k) {
+                closest.insert(node.point);
             }
-            else {
-                closestPoint = nearest(node.rightTop, target, closestPoint);
-                closestPoint = nearest(node.leftBottom, target, closestPoint);
+            else if (node.point.distanceSquaredTo(target) < closest.max().distanceSquaredTo(target)) {
+                closest.delMax();
+                closest.insert(node.point);
             }
         }
 
-        return closestPoint;
+        if (node.isLeftBottom(target)) {
+            nearest(node.leftBottom, target, k, closest);
+            nearest(node.rightTop, target, k, closest);
+        }
+        else {
+            nearest(node.rightTop, target, k, closest);
+            nearest(node.leftBottom, target, k, closest);
+        }
+    }
+
+    // all points within distance r of point p (or at distance r)
+    public Iterable<Point2D> withinRadius(Point2D p, double r) {
+        checkNull(p);
+        if (!(r >= 0)) throw new IllegalArgumentException("radius must be non-negative: " + r);
+
+        return withinRadius(root, p, r * r, new LinkedList<>());
+    }
+
+    // visit only the nodes whose rectangle is within the radius of the target point
+    private LinkedList<Point2D> withinRadius(Node node, Point2D target, double radiusSquared,
+                                             LinkedList<Point2D> radiusPoints) {
+        if (node == null) return radiusPoints;
+
+        if (distanceSquared(node, target) <= radiusSquared) {
+            if (!node.deleted && node.point.distanceSquaredTo(target) <= radiusSquared)
+                radiusPoints.add(node.point);
+            radiusPoints = withinRadius(node.leftBottom, target, radiusSquared, radiusPoints);
+            radiusPoints = withinRadius(node.rightTop, target, radiusSquared, radiusPoints);
+        }
+
+        return radiusPoints;
+    }
+
+    private void resetStats() {
+        nodesVisited = 0;
+        pointsTested = 0;
+        maxDepth = 0;
+    }
+
+    private void visit(int depth) {
+        nodesVisited++;
+        if (depth > maxDepth) maxDepth = depth;
+    }
+
+    // nodes visited by the last range(), rangeCount() or nearest() query;
+    // 0 unless the JVM runs with -Dkdtree.stats=true
+    public long nodesVisited() {
+        return nodesVisited;
+    }
+
+    // points compared with the query by the last range(), rangeCount() or nearest()
+    // query; 0 unless the JVM runs with -Dkdtree.stats=true
+    public long pointsTested() {
+        return pointsTested;
+    }
+
+    // depth of the deepest node visited by the last range(), rangeCount() or
+    // nearest() query (the root is at depth 0); 0 unless the JVM runs with
+    // -Dkdtree.stats=true
+    public int maxDepthVisited() {
+        return maxDepth;
+    }
+
+    // number of nodes, including those of deleted points
+    public int nodes() {
+        return nodes(root);
+    }
+
+    // depth of the deepest node, -1 if the tree has no nodes
+    public int height() {
+        return height(root);
+    }
+
+    private static int height(Node node) {
+        if (node == null) return -1;
+        return 1 + Math.max(height(node.leftBottom), height(node.rightTop));
+    }
+
+    // average depth of the nodes, 0 if the tree has no nodes
+    public double averageDepth() {
+        return root == null ? 0.0 : (double) totalDepth(root, 0) / root.nodes;
+    }
+
+    private static long totalDepth(Node node, int depth) {
+        if (node == null) return 0;
+        return depth + totalDepth(node.leftBottom, depth + 1) + totalDepth(node.rightTop, depth + 1);
     }
 
     private void checkNull(Object obj) {
         if (obj == null) throw new IllegalArgumentException();
     }
 
-    // draw all points to standard draw
+    // draw all points to standard draw, with the splitting lines clipped to the
+    // bounding box of the points if the bounds are infinite
     public void draw() {
         draw(root);
+
+        double left = Double.isInfinite(bounds.xmin()) ? xmin : bounds.xmin();
+        double bottom = Double.isInfinite(bounds.ymin()) ? ymin : bounds.ymin();
+        double right = Double.isInfinite(bounds.xmax()) ? xmax : bounds.xmax();
+        double top = Double.isInfinite(bounds.ymax()) ? ymax : bounds.ymax();
+        if (left > right) return;
+        StdDraw.setPenColor(StdDraw.BLACK);
+        StdDraw.setPenRadius();
+        StdDraw.line(left, bottom, right, bottom);
+        StdDraw.line(right, bottom, right, top);
+        StdDraw.line(right, top, left, top);
+        StdDraw.line(left, top, left, bottom);
     }
 
     private void draw(Node node) {
@@ -205,26 +804,19 @@ public class KdTree {
 
         StdDraw.setPenColor(StdDraw.BLACK);
         StdDraw.setPenRadius(0.01);
-        StdDraw.point(node.point.x(), node.point.y());
+        if (!node.deleted) StdDraw.point(node.point.x(), node.point.y());
         if (node.sepr == Separator.VERTICAL) {
             StdDraw.setPenColor(StdDraw.RED);
             StdDraw.setPenRadius();
-            StdDraw.line(node.point.x(), node.rect.ymin(), node.point.x(), node.rect.ymax());
+            StdDraw.line(node.point.x(), cellYmin(node), node.point.x(), cellYmax(node));
         }
         else {
             StdDraw.setPenColor(StdDraw.BLUE);
             StdDraw.setPenRadius();
-            StdDraw.line(node.rect.xmin(), node.point.y(), node.rect.xmax(), node.point.y());
+            StdDraw.line(cellXmin(node), node.point.y(), cellXmax(node), node.point.y());
         }
         draw(node.leftBottom);
         draw(node.rightTop);
-
-        StdDraw.setPenColor(StdDraw.BLACK);
-        StdDraw.setPenRadius();
-        StdDraw.line(0, 0, 1, 0);
-        StdDraw.line(1, 0, 1, 0);
-        StdDraw.line(1, 1, 0, 1);
-        StdDraw.line(0, 1, 0, 0);
     }
 
     // unit testing of the methods (optional)
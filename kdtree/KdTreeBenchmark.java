@@ -0,0 +1,176 @@
+/******************************************************************************
+ *  Compilation:  javac KdTreeBenchmark.java
+ *  Execution:    java -Dkdtree.stats=true KdTreeBenchmark n [queries]
+ *  Dependencies: Point2D.algs4 RectHV.algs4 StdOut.algs4 StdRandom.algs4
+ *                PointSET.java FlatPointSET.java KdTree.java CompactKdTree.java
+ *                ConcurrentKdTree.java ImplicitKdTree.java GridIndex.java
+ *                KdTreeGenerator.java
+ *
+ *  Benchmark of the point set implementations on n points in the unit square
+ *  from three distributions: uniform, clustered (10 tight Gaussian clusters)
+ *  and sorted (uniform points inserted in x order, the worst case of an
+ *  unbalanced 2d-tree).
+ *
+ *  For each implementation it reports the build time and the mean time of a
+ *  nearest neighbor query and of a range query with about 10 points of a uniform
+ *  set, measured after warming up the same number of queries, and checks each
+ *  nearest distance against the first implementation. The brute force sets are
+ *  skipped above BRUTE_FORCE_LIMIT points, and CompactKdTree, which does not
+ *  rebalance and so takes quadratic time to insert sorted points, is skipped on
+ *  more than UNBALANCED_LIMIT of them. For KdTree it also reports the shape
+ *  of the tree and, with -Dkdtree.stats=true, the mean work per query.
+ *
+ *  This is a plain harness and not a JMH suite: the repository has no build
+ *  to pull JMH in. Run each size in a fresh JVM with a heap large enough for the
+ *  object-based trees (about 150 bytes per point). FlatPointSET scans one point
+ *  at a time unless its vector scans were compiled and the JVM is started with
+ *  --add-modules jdk.incubator.vector (see FlatPointSET).
+ *
+ *  % java -Xmx16g -Dkdtree.stats=true KdTreeBenchmark 10000000 100000
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+public class KdTreeBenchmark {
+    private static final int BRUTE_FORCE_LIMIT = 100000;
+    private static final int UNBALANCED_LIMIT = 50000;    // sorted points for CompactKdTree
+
+    // an implementation under test, once built from the points
+    private static class Index {
+        private final String name;
+        private final Function<Point2D, Point2D> nearest;
+        private final Function<RectHV, Iterable<Point2D>> range;
+
+        Index(String name, Function<Point2D, Point2D> nearest,
+              Function<RectHV, Iterable<Point2D>> range) {
+            this.name = name;
+            this.nearest = nearest;
+            this.range = range;
+        }
+    }
+
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        StdOut.println("n = " + n + ", queries = " + queries);
+        Point2D[] uniform = KdTreeGenerator.uniform(n);
+        benchmark("uniform", uniform, queries, false);
+        benchmark("clustered", KdTreeGenerator.clustered(n), queries, false);
+        Arrays.sort(uniform, Point2D.X_ORDER);
+        benchmark("sorted", uniform, queries, true);
+    }
+
+    private static void benchmark(String distribution, Point2D[] points, int queries, boolean sorted) {
+        Point2D[] targets = KdTreeGenerator.uniform(queries);
+        RectHV[] rects = new RectHV[queries];
+        double side = Math.sqrt(10.0 / points.length);
+        for (int i = 0; i < queries; i++) {
+            double x = StdRandom.uniform(0.0, Math.max(0.0, 1.0 - side));
+            double y = StdRandom.uniform(0.0, Math.max(0.0, 1.0 - side));
+            rects[i] = new RectHV(x, y, Math.min(1.0, x + side), Math.min(1.0, y + side));
+        }
+
+        StdOut.println(distribution + ":");
+        StdOut.printf("  %-18s %10s %12s %12s %10s\n", "", "build s", "nearest us", "range us", "mismatches");
+        double[] expected = null;
+        for (int impl = 0; impl < 7; impl++) {
+            if (impl < 2 && points.length > BRUTE_FORCE_LIMIT) continue;
+            if (impl == 3 && sorted && points.length > UNBALANCED_LIMIT) continue;
+
+            long start = System.nanoTime();
+            Index index = build(impl, points);
+            double buildTime = (System.nanoTime() - start) / 1e9;
+
+            // warm up, then time the same queries
+            double[] distance = new double[queries];
+            double nearestTime = 0.0;
+            for (int run = 0; run < 2; run++) {
+                start = System.nanoTime();
+                for (int i = 0; i < queries; i++)
+                    distance[i] = targets[i].distanceSquaredTo(index.nearest.apply(targets[i]));
+                nearestTime = (System.nanoTime() - start) / 1e3 / queries;
+            }
+            double rangeTime = 0.0;
+            long found = 0;
+            for (int run = 0; run < 2; run++) {
+                start = System.nanoTime();
+                for (int i = 0; i < queries; i++)
+                    for (Point2D p : index.range.apply(rects[i])) found++;
+                rangeTime = (System.nanoTime() - start) / 1e3 / queries;
+            }
+
+            int mismatches = 0;
+            if (expected == null) expected = distance;
+            for (int i = 0; i < queries; i++)
+                if (distance[i] != expected[i]) mismatches++;
+            StdOut.printf("  %-18s %10.3f %12.3f %12.3f %10d\n",
+                          index.name, buildTime, nearestTime, rangeTime, mismatches);
+        }
+
+        KdTree kdtree = new KdTree();
+        for (Point2D p : points)
+            kdtree.insert(p);
+        StdOut.printf("  KdTree shape: %d nodes, height %d, average depth %.2f (log2 n = %.2f)\n",
+                      kdtree.nodes(), kdtree.height(), kdtree.averageDepth(),
+                      Math.log(kdtree.size()) / Math.log(2));
+
+        long visited = 0, tested = 0, depth = 0;
+        for (Point2D q : targets) {
+            kdtree.nearest(q);
+            visited += kdtree.nodesVisited();
+            tested += kdtree.pointsTested();
+            depth += kdtree.maxDepthVisited();
+        }
+        if (visited > 0)
+            StdOut.printf("  KdTree nearest: %.1f nodes visited, %.1f points tested, max depth %.1f\n",
+                          (double) visited / queries, (double) tested / queries, (double) depth / queries);
+    }
+
+    // build implementation impl from the points
+    private static Index build(int impl, Point2D[] points) {
+        switch (impl) {
+            case 0: {
+                PointSET set = new PointSET();
+                for (Point2D p : points) set.insert(p);
+                return new Index("PointSET", set::nearest, set::range);
+            }
+            case 1: {
+                FlatPointSET set = new FlatPointSET();
+                for (Point2D p : points) set.insert(p);
+                return new Index("FlatPointSET", set::nearest, set::range);
+            }
+            case 2: {
+                KdTree tree = new KdTree();
+                for (Point2D p : points) tree.insert(p);
+                return new Index("KdTree", tree::nearest, tree::range);
+            }
+            case 3: {
+                CompactKdTree tree = new CompactKdTree();
+                for (Point2D p : points) tree.insert(p);
+                return new Index("CompactKdTree", tree::nearest, tree::range);
+            }
+            case 4: {
+                ConcurrentKdTree tree = new ConcurrentKdTree();
+                for (Point2D p : points) tree.insert(p);
+                return new Index("ConcurrentKdTree", tree::nearest, tree::range);
+            }
+            case 5: {
+                ImplicitKdTree tree = new ImplicitKdTree(points);
+                return new Index("ImplicitKdTree", tree::nearest, tree::range);
+            }
+            default: {
+                GridIndex grid = new GridIndex();
+                for (Point2D p : points) grid.insert(p);
+                return new Index("GridIndex", grid::nearest, grid::range);
+            }
+        }
+    }
+}
@@ -1,9 +1,12 @@
 /******************************************************************************
  *  Compilation:  javac KdTreeGenerator.java
- *  Execution:    java KdTreeGenerator n
- *  Dependencies: 
+ *  Execution:    java KdTreeGenerator n [output.bin]
+ *  Dependencies: Point2D.algs4 PointFile.java
  *
- *  Creates n random points in the unit square and print to standard output.
+ *  Creates n random points in the unit square and print to standard output,
+ *  or write them to a binary PointFile if a file name is given.
+ *
+ *  The benchmarks take their inputs from uniform() and clustered().
  *
  *  % java KdTreeGenerator 5
  *  0.195080 0.938777
@@ -12,15 +15,52 @@
  *  0.183384 0.636701
  *  0.649952 0.237188
  *
+ *  % java KdTreeGenerator 50000000 points.bin
+ *
  ******************************************************************************/
 
+import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.StdRandom;
 import edu.princeton.cs.algs4.StdOut;
 
 public class KdTreeGenerator {
 
+    // n points uniformly spread in the unit square
+    public static Point2D[] uniform(int n) {
+        Point2D[] points = new Point2D[n];
+        for (int i = 0; i < n; i++)
+            points[i] = new Point2D(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+        return points;
+    }
+
+    // n points around 10 random centers, standard deviation 0.005
+    public static Point2D[] clustered(int n) {
+        double[] cx = new double[10];
+        double[] cy = new double[10];
+        for (int c = 0; c < 10; c++) {
+            cx[c] = StdRandom.uniform(0.1, 0.9);
+            cy[c] = StdRandom.uniform(0.1, 0.9);
+        }
+        Point2D[] points = new Point2D[n];
+        for (int i = 0; i < n; i++) {
+            int c = StdRandom.uniform(10);
+            double x = Math.min(1.0, Math.max(0.0, StdRandom.gaussian(cx[c], 0.005)));
+            double y = Math.min(1.0, Math.max(0.0, StdRandom.gaussian(cy[c], 0.005)));
+            points[i] = new Point2D(x, y);
+        }
+        return points;
+    }
+
     public static void main(String[] args) {
         int n = Integer.parseInt(args[0]);
+        if (args.length > 1) {
+            try (PointFile.Writer out = new PointFile.Writer(args[1])) {
+                for (int i = 0; i < n; i++)
+                    out.write(StdRandom.uniform(0.0, 1.0), StdRandom.uniform(0.0, 1.0));
+            }
+            return;
+        }
+
         for (int i = 0; i < n; i++) {
             double x = StdRandom.uniform(0.0, 1.0);
             double y = StdRandom.uniform(0.0, 1.0);
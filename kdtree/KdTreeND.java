@@ -0,0 +1,334 @@
+/******************************************************************************
+ *  Compilation:  javac KdTreeND.java
+ *  Execution:    java KdTreeND n d
+ *  Dependencies: StdOut.algs4 StdRandom.algs4 Arrays.java
+ *
+ * Static k-d tree of n points in d dimensions, for feature vectors with more
+ * coordinates than a Point2D.
+ *
+ * The points are given as one flat array in row-major order: point i is
+ * coords[i*d .. i*d + d-1]. Like ImplicitKdTree the tree is built in bulk and is
+ * implicit in that array: the subtree of the points in [lo, hi) has its splitting
+ * point at mid = (lo + hi) / 2, its lower subtree in [lo, mid) and its upper
+ * subtree in [mid + 1, hi). Instead of cycling through the axes, each subtree is
+ * split on the axis along which its points are spread the most, so clustered or
+ * badly scaled coordinates still give cells of similar shape; axis[mid] records
+ * that choice. No coordinate range is assumed.
+ *
+ * Queries return indices of points in the input array. Duplicate points are
+ * all kept.
+ *
+ * The nearest neighbor searches keep, for the cell being visited, its offset
+ * from the query along each axis, and the squared distance from the query to the
+ * cell as the sum of the squared offsets. Crossing a splitting plane changes
+ * one offset, so the distance to the far cell is updated in O(1) instead of
+ * being recomputed over d axes, and a far cell is visited only if it is closer
+ * than the k-th nearest point found so far.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+
+public class KdTreeND {
+    private final int d;           // number of dimensions
+    private final int size;        // number of points
+    private final double[] c;      // coordinates in tree order, d per point
+    private final int[] ids;       // index of each point in the input array
+    private final byte[] axis;     // splitting axis of the subtree with its median at i
+
+    // the k nearest points found so far: a max-heap on distance, so the farthest
+    // of them is at the root and is replaced first
+    private static class Neighbors {
+        private final int[] index;
+        private final double[] distance;
+        private int n;
+
+        Neighbors(int k) {
+            index = new int[k];
+            distance = new double[k];
+        }
+
+        // squared distance a point must beat to be one of the k nearest
+        double bound() {
+            return n < index.length ? Double.POSITIVE_INFINITY : distance[0];
+        }
+
+        void offer(int i, double dist) {
+            if (n < index.length) {
+                index[n] = i;
+                distance[n] = dist;
+                int j = n++;
+                while (j > 0 && distance[(j - 1) / 2] < distance[j]) {
+                    exch((j - 1) / 2, j);
+                    j = (j - 1) / 2;
+                }
+            }
+            else if (dist < distance[0]) {
+                index[0] = i;
+                distance[0] = dist;
+                int j = 0;
+                while (2 * j + 1 < n) {
+                    int child = 2 * j + 1;
+                    if (child + 1 < n && distance[child + 1] > distance[child]) child++;
+                    if (distance[j] >= distance[child]) break;
+                    exch(j, child);
+                    j = child;
+                }
+            }
+        }
+
+        // the indices nearest first; empties the heap
+        int[] sorted() {
+            int[] result = new int[n];
+            while (n > 0) {
+                result[n - 1] = index[0];
+                exch(0, --n);
+                int j = 0;
+                while (2 * j + 1 < n) {
+                    int child = 2 * j + 1;
+                    if (child + 1 < n && distance[child + 1] > distance[child]) child++;
+                    if (distance[j] >= distance[child]) break;
+                    exch(j, child);
+                    j = child;
+                }
+            }
+            return result;
+        }
+
+        private void exch(int i, int j) {
+            int ti = index[i];
+            index[i] = index[j];
+            index[j] = ti;
+            double td = distance[i];
+            distance[i] = distance[j];
+            distance[j] = td;
+        }
+    }
+
+    // indices found by a range search, in an array that grows by doubling
+    private static class Found {
+        private int[] index = new int[16];
+        private int n;
+
+        void add(int i) {
+            if (n == index.length) index = Arrays.copyOf(index, 2 * n);
+            index[n++] = i;
+        }
+    }
+
+    // build a balanced tree of the points in coords, d coordinates per point
+    public KdTreeND(int d, double[] coords) {
+        checkNull(coords);
+        if (d < 1 || d > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("dimension must be between 1 and " + Byte.MAX_VALUE);
+        if (coords.length % d != 0)
+            throw new IllegalArgumentException("coords.length is not a multiple of " + d);
+        for (double v : coords)
+            if (Double.isNaN(v)) throw new IllegalArgumentException("coordinate is NaN");
+
+        this.d = d;
+        size = coords.length / d;
+        c = coords.clone();
+        ids = new int[size];
+        for (int i = 0; i < size; i++)
+            ids[i] = i;
+        axis = new byte[size];
+        build(0, size);
+    }
+
+    // put the median of [lo, hi) along the axis of largest spread at the middle,
+    // then build the two halves
+    private void build(int lo, int hi) {
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            int a = widestAxis(lo, hi);
+            axis[mid] = (byte) a;
+            select(lo, hi - 1, mid, a);
+            build(lo, mid);
+            lo = mid + 1;
+        }
+    }
+
+    // axis with the largest max - min over the points in [lo, hi)
+    private int widestAxis(int lo, int hi) {
+        double[] min = new double[d];
+        double[] max = new double[d];
+        System.arraycopy(c, lo * d, min, 0, d);
+        System.arraycopy(c, lo * d, max, 0, d);
+        for (int i = lo + 1; i < hi; i++) {
+            int base = i * d;
+            for (int a = 0; a < d; a++) {
+                double v = c[base + a];
+                if (v < min[a]) min[a] = v;
+                else if (v > max[a]) max[a] = v;
+            }
+        }
+
+        int widest = 0;
+        for (int a = 1; a < d; a++)
+            if (max[a] - min[a] > max[widest] - min[widest]) widest = a;
+        return widest;
+    }
+
+    // rearrange the points in [lo..hi] so that point k has the axis coordinate it
+    // would have in sorted order, with nothing larger before it and nothing smaller
+    // after it (3-way partitioning quickselect)
+    private void select(int lo, int hi, int k, int a) {
+        while (hi > lo) {
+            double pivot = c[StdRandom.uniform(lo, hi + 1) * d + a];
+            int lt = lo, i = lo, gt = hi;
+            while (i <= gt) {
+                double v = c[i * d + a];
+                if (v < pivot) exch(lt++, i++);
+                else if (v > pivot) exch(i, gt--);
+                else i++;
+            }
+            if (k < lt) hi = lt - 1;
+            else if (k > gt) lo = gt + 1;
+            else return;
+        }
+    }
+
+    private void exch(int i, int j) {
+        int bi = i * d, bj = j * d;
+        for (int a = 0; a < d; a++) {
+            double t = c[bi + a];
+            c[bi + a] = c[bj + a];
+            c[bj + a] = t;
+        }
+        int tid = ids[i];
+        ids[i] = ids[j];
+        ids[j] = tid;
+    }
+
+    // number of dimensions
+    public int dimension() {
+        return d;
+    }
+
+    // is the set empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // number of points in the set
+    public int size() {
+        return size;
+    }
+
+    // indices of all points inside the box [min[a], max[a]] on every axis a
+    // (boundary included)
+    public int[] range(double[] min, double[] max) {
+        checkPoint(min);
+        checkPoint(max);
+        Found found = new Found();
+        range(0, size, min, max, found);
+        return Arrays.copyOf(found.index, found.n);
+    }
+
+    // visit a subtree only if the box reaches its side of the splitting plane
+    private void range(int lo, int hi, double[] min, double[] max, Found found) {
+        if (lo >= hi) return;
+
+        int mid = (lo + hi) >>> 1;
+        int base = mid * d;
+        boolean inside = true;
+        for (int a = 0; a < d && inside; a++)
+            inside = c[base + a] >= min[a] && c[base + a] <= max[a];
+        if (inside) found.add(ids[mid]);
+
+        int a = axis[mid];
+        double split = c[base + a];
+        if (min[a] <= split) range(lo, mid, min, max, found);
+        if (max[a] >= split) range(mid + 1, hi, min, max, found);
+    }
+
+    // index of a nearest point to q; -1 if the set is empty
+    public int nearest(double[] q) {
+        int[] nearest = nearest(q, 1);
+        return nearest.length == 0 ? -1 : nearest[0];
+    }
+
+    // indices of the k points nearest to q, nearest first (fewer if the set has
+    // fewer than k points)
+    public int[] nearest(double[] q, int k) {
+        checkPoint(q);
+        if (k < 1) throw new IllegalArgumentException("k must be positive");
+
+        Neighbors best = new Neighbors(Math.min(k, Math.max(size, 1)));
+        nearest(0, size, q, new double[d], 0.0, best);
+        return best.sorted();
+    }
+
+    // search the subtree of [lo, hi), whose cell is at squared distance rd from q
+    // with offset off[a] along each axis a; the near side of the splitting plane
+    // first, the far side only if its cell is closer than the current bound
+    private void nearest(int lo, int hi, double[] q, double[] off, double rd, Neighbors best) {
+        if (lo >= hi) return;
+
+        int mid = (lo + hi) >>> 1;
+        int base = mid * d;
+        double bound = best.bound();
+        double dist = 0.0;
+        for (int a = 0; a < d && dist < bound; a++) {
+            double diff = c[base + a] - q[a];
+            dist += diff * diff;
+        }
+        if (dist < bound) best.offer(ids[mid], dist);
+
+        int a = axis[mid];
+        double diff = q[a] - c[base + a];
+        if (diff < 0) nearest(lo, mid, q, off, rd, best);
+        else nearest(mid + 1, hi, q, off, rd, best);
+
+        double old = off[a];
+        double farDistance = rd - old * old + diff * diff;
+        if (farDistance >= best.bound()) return;
+        off[a] = diff;
+        if (diff < 0) nearest(mid + 1, hi, q, off, farDistance, best);
+        else nearest(lo, mid, q, off, farDistance, best);
+        off[a] = old;
+    }
+
+    private void checkPoint(double[] p) {
+        checkNull(p);
+        if (p.length != d)
+            throw new IllegalArgumentException("point has " + p.length + " coordinates, not " + d);
+    }
+
+    private static void checkNull(Object obj) {
+        if (obj == null) throw new IllegalArgumentException();
+    }
+
+    // time nearest neighbor and k-nearest (k = 10) searches in n random points
+    // in d dimensions
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int d = Integer.parseInt(args[1]);
+        int k = 10;
+        int queries = 10000;
+        double[] coords = new double[n * d];
+        for (int i = 0; i < coords.length; i++)
+            coords[i] = StdRandom.uniform();
+        long start = System.nanoTime();
+        KdTreeND kdtree = new KdTreeND(d, coords);
+        StdOut.printf("n = %d, d = %d, built in %.3f s\n", n, d, (System.nanoTime() - start) / 1e9);
+
+        double[][] q = new double[queries][d];
+        for (int t = 0; t < queries; t++)
+            for (int a = 0; a < d; a++)
+                q[t][a] = StdRandom.uniform();
+
+        start = System.nanoTime();
+        for (int t = 0; t < queries; t++)
+            kdtree.nearest(q[t]);
+        double nearestTime = (System.nanoTime() - start) / 1e3 / queries;
+        start = System.nanoTime();
+        for (int t = 0; t < queries; t++)
+            kdtree.nearest(q[t], k);
+        double kNearestTime = (System.nanoTime() - start) / 1e3 / queries;
+        StdOut.printf("nearest: %.3f us, %d-nearest: %.3f us\n", nearestTime, k, kNearestTime);
+    }
+}
@@ -1,17 +1,22 @@
 /******************************************************************************
  *  Compilation:  javac NearestNeighborVisualizer.java
  *  Execution:    java NearestNeighborVisualizer input.txt
- *  Dependencies: PointSET.java KdTree.java
+ *                java NearestNeighborVisualizer input.bin
+ *  Dependencies: PointSET.java KdTree.java PointImage.java
  *
  *  Read points from a file (specified as a command-line argument) and
  *  draw to standard draw. Highlight the closest point to the mouse.
  *
  *  The nearest neighbor according to the brute-force algorithm is drawn
  *  in red; the nearest neighbor using the kd-tree algorithm is drawn in blue.
+ *  The time each took for the last query is shown at the top.
+ *
+ *  The points are drawn once into an image (see PointImage), which each
+ *  frame draws as its background, so the visualizer keeps up with a million
+ *  points.
  *
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.StdDraw;
 
@@ -21,16 +26,15 @@ public class NearestNeighborVisualizer {
 
         // initialize the two data structures with point from file
         String filename = args[0];
-        In in = new In(filename);
-        KdTree brute = new KdTree();
+        double[][] points = PointImage.read(filename);
+        PointSET brute = new PointSET();
         KdTree kdtree = new KdTree();
-        while (!in.isEmpty()) {
-            double x = in.readDouble();
-            double y = in.readDouble();
-            Point2D p = new Point2D(x, y);
+        for (int i = 0; i < points[0].length; i++) {
+            Point2D p = new Point2D(points[0][i], points[1][i]);
             kdtree.insert(p);
             brute.insert(p);
         }
+        String image = PointImage.write(points[0], points[1]);
 
         // process nearest neighbor queries
         StdDraw.enableDoubleBuffering();
@@ -41,21 +45,34 @@ public class NearestNeighborVisualizer {
             double y = StdDraw.mouseY();
             Point2D query = new Point2D(x, y);
 
+            // time both searches
+            long start = System.nanoTime();
+            Point2D bruteNearest = brute.nearest(query);
+            long bruteTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            Point2D kdtreeNearest = kdtree.nearest(query);
+            long kdtreeTime = System.nanoTime() - start;
+
             // draw all of the points
             StdDraw.clear();
-            StdDraw.setPenColor(StdDraw.BLACK);
-            StdDraw.setPenRadius(0.01);
-            brute.draw();
+            StdDraw.picture(0.5, 0.5, image, 1.0, 1.0);
 
             // draw in red the nearest neighbor (using brute-force algorithm)
             StdDraw.setPenRadius(0.03);
             StdDraw.setPenColor(StdDraw.RED);
-            brute.nearest(query).draw();
+            bruteNearest.draw();
             StdDraw.setPenRadius(0.02);
 
             // draw in blue the nearest neighbor (using kd-tree algorithm)
             StdDraw.setPenColor(StdDraw.BLUE);
-            kdtree.nearest(query).draw();
+            kdtreeNearest.draw();
+
+            // show the latencies
+            StdDraw.setPenColor(StdDraw.WHITE);
+            StdDraw.filledRectangle(0.5, 0.98, 0.5, 0.02);
+            StdDraw.setPenColor(StdDraw.BLACK);
+            StdDraw.textLeft(0.01, 0.98, "brute force " + PointImage.time(bruteTime)
+                                         + "   kd-tree " + PointImage.time(kdtreeTime));
             StdDraw.show();
             StdDraw.pause(40);
         }
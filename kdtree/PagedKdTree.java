@@ -0,0 +1,573 @@
+/******************************************************************************
+ *  Compilation:  javac PagedKdTree.java
+ *  Execution:    java PagedKdTree input.bin index.pkd [cache pages]
+ *  Dependencies: Point2D.algs4 RectHV.algs4 StdOut.algs4 StdRandom.algs4
+ *                LinkedList.java LinkedHashMap.java PointFile.java
+ *
+ * Static 2d-tree of points kept on disk, for point sets larger than the heap.
+ *
+ * The index file is built bottom-up from a binary PointFile. The points are
+ * copied after a header page of a scratch file next to the index, sorted by x
+ * then y in place to remove the duplicates, and then split recursively like
+ * ImplicitKdTree, except that the leaves are pages: a subtree covers a run
+ * [lo, hi) of PAGE-byte pages of PAGE_POINTS points each, its points are
+ * partitioned around the first point of page mid = (lo + hi) / 2 by the
+ * coordinate with the larger spread, and the two halves are built from pages
+ * [lo, mid) and [mid, hi). Every page but the last is full. The work is done on
+ * memory-mapped chunks of at most CHUNK bytes, so the operating system pages
+ * the points in and out as the sorts and the partitions sweep over them. The
+ * points are then copied, with the directory, to a new file that is renamed to
+ * the index file once it is complete.
+ *
+ * The directory, the bounding box of the points of each subtree in preorder,
+ * follows the pages. It takes 64 bytes per page (a quarter of a byte per point)
+ * and is read onto the heap when the index is opened; the pages stay on disk
+ * and are read through an LRU cache of a fixed number of pages. A query visits
+ * a subtree only if its bounding box can hold an answer, so range() reads the
+ * pages whose boxes meet the rectangle and nearest() reads the pages closer than
+ * the nearest point found so far, nearest boxes first.
+ *
+ * pagesAccessed() and pagesRead() report the I/O of the last query: the pages it
+ * looked at and those of them that missed the cache and were read from the file.
+ * The cache makes queries not thread safe; open the index once per thread.
+ *
+ * The header page holds the magic "PKD1", the page size and the number of
+ * points n as a long, little-endian like PointFile. The directory must fit in
+ * an array, which limits an index to MAX_PAGES pages (8.6 billion points).
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class PagedKdTree implements AutoCloseable {
+    private static final int PAGE = 4096;                     // bytes per page
+    private static final int PAGE_POINTS = PAGE / 16;         // points per page
+    private static final int CHUNK_SHIFT = 26;                // 2^26 points (1 GB) mapped at a time
+    private static final long CHUNK_POINTS = 1L << CHUNK_SHIFT;
+    private static final int MAX_PAGES = 1 << 25;             // pages whose directory fits in an array
+    private static final int MAGIC = 0x31444b50;              // "PKD1" read as a little-endian int
+    private static final int CUTOFF = 16;                     // insertion sort small subarrays
+    private static final int DEFAULT_CACHE = 1024;            // pages cached by default (4 MB)
+
+    private final FileChannel channel;
+    private final DoubleBuffer[] chunks;      // the pages, mapped read-only
+    private final long n;                     // number of distinct points
+    private final int pages;                  // number of pages
+    private final double[] dir;               // xmin, ymin, xmax, ymax of each subtree in preorder
+    private final Map<Integer, double[]> cache;
+    private int pagesAccessed;                // pages looked at by the last query
+    private int pagesRead;                    // pages read from the file by the last query
+
+    // nearest point found so far in a nearest neighbor search
+    private double bestX, bestY;
+    private double bestDistance;
+
+    // open an index file written by build() with the default page cache
+    public PagedKdTree(String filename) {
+        this(filename, DEFAULT_CACHE);
+    }
+
+    // open an index file written by build(), caching at most cachePages pages
+    public PagedKdTree(String filename, int cachePages) {
+        if (filename == null) throw new IllegalArgumentException("Argument is null!");
+        if (cachePages < 1) throw new IllegalArgumentException("cache must hold a page");
+        try {
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining())
+                if (channel.read(header, header.position()) < 0) break;
+            if (header.position() < 16 || header.getInt(0) != MAGIC || header.getInt(4) != PAGE)
+                throw new IllegalArgumentException("not a paged kd-tree file: " + filename);
+
+            n = header.getLong(8);
+            if (n < 0 || pages(n) > MAX_PAGES || channel.size() != fileSize(pages(n)))
+                throw new IllegalArgumentException("corrupt paged kd-tree file: " + filename);
+            pages = pages(n);
+            chunks = map(channel, FileChannel.MapMode.READ_ONLY, n);
+            dir = new double[4 * nodes(pages)];
+            if (pages > 0)
+                channel.map(FileChannel.MapMode.READ_ONLY, PAGE + (long) PAGE * pages, 8L * dir.length)
+                       .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(dir);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        cache = new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest) {
+                return size() > cachePages;
+            }
+        };
+    }
+
+    private static int pages(long n) {
+        return (int) Math.min(Integer.MAX_VALUE, (n + PAGE_POINTS - 1) / PAGE_POINTS);
+    }
+
+    // number of subtrees of a tree of the pages
+    private static int nodes(int pages) {
+        return pages == 0 ? 0 : 2 * pages - 1;
+    }
+
+    // length of an index file of the pages: header, pages, directory
+    private static long fileSize(int pages) {
+        return PAGE + (long) PAGE * pages + 32L * nodes(pages);
+    }
+
+    // the first n points after the header page, as double buffers of at most
+    // CHUNK_POINTS points
+    private static DoubleBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long n)
+            throws IOException {
+        DoubleBuffer[] chunks = new DoubleBuffer[(int) ((n + CHUNK_POINTS - 1) / CHUNK_POINTS)];
+        for (int c = 0; c < chunks.length; c++) {
+            long from = c * CHUNK_POINTS;
+            long m = Math.min(CHUNK_POINTS, n - from);
+            chunks[c] = channel.map(mode, PAGE + 16 * from, 16 * m)
+                               .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+        return chunks;
+    }
+
+    // index of the x-coordinate of point i in its chunk
+    private static int offset(long i) {
+        return (int) (i & (CHUNK_POINTS - 1)) << 1;
+    }
+
+    /***************************************************************************
+     *  Building the index file.
+     ***************************************************************************/
+
+    // write the index of the points of a binary PointFile to indexFile
+    public static void build(String pointFile, String indexFile) {
+        long n = PointFile.longCount(pointFile);
+        if (pages(n) > MAX_PAGES) throw new IllegalArgumentException("too many points: " + n);
+        if (indexFile == null) throw new IllegalArgumentException("Argument is null!");
+
+        // the points are arranged in the mapped scratch file indexFile.tmp, which
+        // cannot be unmapped and so cannot be cut to the size of the index; the
+        // index is written to indexFile.part and renamed to indexFile when complete
+        Path target = Paths.get(indexFile);
+        Path scratch = target.resolveSibling(target.getFileName() + ".tmp");
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            try (FileChannel in = FileChannel.open(Paths.get(pointFile), StandardOpenOption.READ);
+                 FileChannel work = FileChannel.open(scratch, StandardOpenOption.CREATE,
+                                                     StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                                     StandardOpenOption.TRUNCATE_EXISTING);
+                 FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                // copy the points after the header page
+                work.position(PAGE);
+                for (long done = 0; done < 16 * n; )
+                    done += in.transferTo(PointFile.HEADER + done, 16 * n - done, work);
+
+                Builder builder = new Builder(work, n);
+                long distinct = builder.build();
+                int pages = pages(distinct);
+
+                ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(PAGE).putLong(distinct).flip();
+                while (header.hasRemaining())
+                    out.write(header, header.position());
+                for (long done = 0; done < 16 * distinct; )
+                    done += work.transferTo(PAGE + done, 16 * distinct - done,
+                                            out.position(PAGE + done));
+                writeDirectory(out, builder.dir, PAGE + (long) PAGE * pages);
+                // pad the last page of an index without a directory
+                if (out.size() < fileSize(pages))
+                    out.write(ByteBuffer.allocate(1), fileSize(pages) - 1);
+                out.force(true);
+            }
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            delete(scratch);
+            delete(part);
+        }
+    }
+
+    // write the directory to the channel from the position, a buffer at a time
+    private static void writeDirectory(FileChannel out, double[] dir, long position)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(PAGE * 256).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < dir.length; ) {
+            buf.clear();
+            while (buf.hasRemaining() && i < dir.length)
+                buf.putDouble(dir[i++]);
+            buf.flip();
+            while (buf.hasRemaining())
+                position += out.write(buf, position);
+        }
+    }
+
+    // delete a scratch file if there is one; a file that is still mapped cannot
+    // be deleted on some systems, and goes when the JVM exits instead
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    // sorts, removes the duplicates and partitions the mapped points of a scratch file
+    private static class Builder {
+        private final DoubleBuffer[] chunks;
+        private long n;
+        private double[] dir;
+
+        Builder(FileChannel channel, long n) throws IOException {
+            this.n = n;
+            chunks = map(channel, FileChannel.MapMode.READ_WRITE, n);
+        }
+
+        // arrange the points in page order; returns the number of distinct points
+        long build() {
+            for (long i = 0; i < n; i++)
+                if (Double.isNaN(x(i)) || Double.isNaN(y(i)))
+                    throw new IllegalArgumentException("coordinate is NaN");
+
+            sort(0, n - 1);
+            long distinct = 0;
+            for (long i = 0; i < n; i++) {
+                if (distinct > 0 && x(i) == x(distinct - 1) && y(i) == y(distinct - 1)) continue;
+                set(distinct++, x(i), y(i));
+            }
+            n = distinct;
+
+            int pages = pages(n);
+            dir = new double[4 * nodes(pages)];
+            if (pages > 0) build(0, 0, pages);
+            return n;
+        }
+
+        // record the bounding box of subtree k of pages [lo, hi), then split its
+        // points at the first point of the middle page by the wider coordinate
+        private void build(int k, int lo, int hi) {
+            long from = (long) lo * PAGE_POINTS;
+            long to = Math.min((long) hi * PAGE_POINTS, n);
+            double xmin = Double.POSITIVE_INFINITY, ymin = Double.POSITIVE_INFINITY;
+            double xmax = Double.NEGATIVE_INFINITY, ymax = Double.NEGATIVE_INFINITY;
+            for (long i = from; i < to; i++) {
+                double x = x(i), y = y(i);
+                if (x < xmin) xmin = x;
+                if (x > xmax) xmax = x;
+                if (y < ymin) ymin = y;
+                if (y > ymax) ymax = y;
+            }
+            dir[4 * k] = xmin;
+            dir[4 * k + 1] = ymin;
+            dir[4 * k + 2] = xmax;
+            dir[4 * k + 3] = ymax;
+            if (hi - lo == 1) return;
+
+            int mid = (lo + hi) >>> 1;
+            int axis = xmax - xmin >= ymax - ymin ? 0 : 1;
+            select(from, to - 1, (long) mid * PAGE_POINTS, axis);
+            build(k + 1, lo, mid);
+            build(k + 2 * (mid - lo), mid, hi);
+        }
+
+        // 3-way partitioning quickselect of point k of [lo..hi] by the axis coordinate
+        private void select(long lo, long hi, long k, int axis) {
+            while (hi > lo) {
+                double pivot = coordinate(ThreadLocalRandom.current().nextLong(lo, hi + 1), axis);
+                long lt = lo, i = lo, gt = hi;
+                while (i <= gt) {
+                    double c = coordinate(i, axis);
+                    if (c < pivot) exch(lt++, i++);
+                    else if (c > pivot) exch(i, gt--);
+                    else i++;
+                }
+                if (k < lt) hi = lt - 1;
+                else if (k > gt) lo = gt + 1;
+                else return;
+            }
+        }
+
+        // quicksort [lo..hi] by x-coordinate, then by y-coordinate
+        private void sort(long lo, long hi) {
+            while (hi - lo >= CUTOFF) {
+                long p = ThreadLocalRandom.current().nextLong(lo, hi + 1);
+                double px = x(p), py = y(p);
+                long lt = lo, i = lo, gt = hi;
+                while (i <= gt) {
+                    int cmp = compare(x(i), y(i), px, py);
+                    if (cmp < 0) exch(lt++, i++);
+                    else if (cmp > 0) exch(i, gt--);
+                    else i++;
+                }
+                // recurse into the smaller side to bound the stack depth
+                if (lt - lo < hi - gt) {
+                    sort(lo, lt - 1);
+                    lo = gt + 1;
+                }
+                else {
+                    sort(gt + 1, hi);
+                    hi = lt - 1;
+                }
+            }
+            for (long i = lo + 1; i <= hi; i++)
+                for (long j = i; j > lo && compare(x(j), y(j), x(j - 1), y(j - 1)) < 0; j--)
+                    exch(j, j - 1);
+        }
+
+        private static int compare(double x1, double y1, double x2, double y2) {
+            if (x1 != x2) return x1 < x2 ? -1 : 1;
+            if (y1 != y2) return y1 < y2 ? -1 : 1;
+            return 0;
+        }
+
+        private double x(long i) {
+            return chunks[(int) (i >>> CHUNK_SHIFT)].get(offset(i));
+        }
+
+        private double y(long i) {
+            return chunks[(int) (i >>> CHUNK_SHIFT)].get(offset(i) + 1);
+        }
+
+        private double coordinate(long i, int axis) {
+            return chunks[(int) (i >>> CHUNK_SHIFT)].get(offset(i) + axis);
+        }
+
+        private void set(long i, double x, double y) {
+            DoubleBuffer chunk = chunks[(int) (i >>> CHUNK_SHIFT)];
+            chunk.put(offset(i), x);
+            chunk.put(offset(i) + 1, y);
+        }
+
+        private void exch(long i, long j) {
+            double x = x(i), y = y(i);
+            set(i, x(j), y(j));
+            set(j, x, y);
+        }
+    }
+
+    /***************************************************************************
+     *  Queries.
+     ***************************************************************************/
+
+    // is the set empty?
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    // number of points in the set
+    public long size() {
+        return n;
+    }
+
+    // pages looked at by the last query
+    public int pagesAccessed() {
+        return pagesAccessed;
+    }
+
+    // pages the last query read from the file, because they were not in the cache
+    public int pagesRead() {
+        return pagesRead;
+    }
+
+    // the points of page p as x0, y0, x1, y1, ..., through the cache
+    private double[] page(int p) {
+        pagesAccessed++;
+        double[] coords = cache.get(p);
+        if (coords == null) {
+            pagesRead++;
+            long from = (long) p * PAGE_POINTS;
+            coords = new double[2 * (int) Math.min(PAGE_POINTS, n - from)];
+            chunks[(int) (from >>> CHUNK_SHIFT)].get(offset(from), coords);
+            cache.put(p, coords);
+        }
+        return coords;
+    }
+
+    // does the set contain point p?
+    public boolean contains(Point2D p) {
+        checkNull(p);
+        pagesAccessed = 0;
+        pagesRead = 0;
+        return pages > 0 && contains(0, 0, pages, p.x(), p.y());
+    }
+
+    private boolean contains(int k, int lo, int hi, double x, double y) {
+        if (x < dir[4 * k] || y < dir[4 * k + 1] || x > dir[4 * k + 2] || y > dir[4 * k + 3])
+            return false;
+        if (hi - lo == 1) {
+            double[] coords = page(lo);
+            for (int i = 0; i < coords.length; i += 2)
+                if (coords[i] == x && coords[i + 1] == y) return true;
+            return false;
+        }
+        int mid = (lo + hi) >>> 1;
+        return contains(k + 1, lo, mid, x, y) || contains(k + 2 * (mid - lo), mid, hi, x, y);
+    }
+
+    // all points that are inside the rectangle (or on the boundary)
+    public Iterable<Point2D> range(RectHV rect) {
+        checkNull(rect);
+        pagesAccessed = 0;
+        pagesRead = 0;
+        LinkedList<Point2D> rangePoints = new LinkedList<>();
+        if (pages > 0) range(0, 0, pages, rect, false, rangePoints);
+        return rangePoints;
+    }
+
+    // visit a subtree only if its bounding box meets the rectangle; inside is true
+    // if the rectangle contains the box of an ancestor, and so all the points
+    private void range(int k, int lo, int hi, RectHV rect, boolean inside,
+                       LinkedList<Point2D> rangePoints) {
+        if (!inside) {
+            double xmin = dir[4 * k], ymin = dir[4 * k + 1];
+            double xmax = dir[4 * k + 2], ymax = dir[4 * k + 3];
+            if (xmax < rect.xmin() || xmin > rect.xmax() || ymax < rect.ymin() || ymin > rect.ymax())
+                return;
+            inside = xmin >= rect.xmin() && xmax <= rect.xmax()
+                    && ymin >= rect.ymin() && ymax <= rect.ymax();
+        }
+        if (hi - lo == 1) {
+            double[] coords = page(lo);
+            for (int i = 0; i < coords.length; i += 2) {
+                double x = coords[i], y = coords[i + 1];
+                if (inside || x >= rect.xmin() && x <= rect.xmax()
+                        && y >= rect.ymin() && y <= rect.ymax())
+                    rangePoints.add(new Point2D(x, y));
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        range(k + 1, lo, mid, rect, inside, rangePoints);
+        range(k + 2 * (mid - lo), mid, hi, rect, inside, rangePoints);
+    }
+
+    // a nearest neighbor in the set to point p; null if the set is empty
+    public Point2D nearest(Point2D p) {
+        checkNull(p);
+        pagesAccessed = 0;
+        pagesRead = 0;
+        if (isEmpty()) return null;
+
+        bestDistance = Double.POSITIVE_INFINITY;
+        nearest(0, 0, pages, p.x(), p.y());
+        return new Point2D(bestX, bestY);
+    }
+
+    // search the subtree whose bounding box is closer to the target first; a
+    // subtree only if its box is closer than the nearest point found so far
+    private void nearest(int k, int lo, int hi, double x, double y) {
+        if (hi - lo == 1) {
+            double[] coords = page(lo);
+            for (int i = 0; i < coords.length; i += 2) {
+                double dx = coords[i] - x;
+                double dy = coords[i + 1] - y;
+                double dist = dx * dx + dy * dy;
+                if (dist < bestDistance) {
+                    bestDistance = dist;
+                    bestX = coords[i];
+                    bestY = coords[i + 1];
+                }
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int left = k + 1, right = k + 2 * (mid - lo);
+        double leftDist = distanceSquared(left, x, y);
+        double rightDist = distanceSquared(right, x, y);
+        if (leftDist <= rightDist) {
+            if (leftDist < bestDistance) nearest(left, lo, mid, x, y);
+            if (rightDist < bestDistance) nearest(right, mid, hi, x, y);
+        }
+        else {
+            if (rightDist < bestDistance) nearest(right, mid, hi, x, y);
+            if (leftDist < bestDistance) nearest(left, lo, mid, x, y);
+        }
+    }
+
+    // square of the distance from (x, y) to the bounding box of subtree k
+    private double distanceSquared(int k, double x, double y) {
+        double dx = Math.max(0.0, Math.max(dir[4 * k] - x, x - dir[4 * k + 2]));
+        double dy = Math.max(0.0, Math.max(dir[4 * k + 1] - y, y - dir[4 * k + 3]));
+        return dx * dx + dy * dy;
+    }
+
+    // close the index file
+    public void close() {
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void checkNull(Object obj) {
+        if (obj == null) throw new IllegalArgumentException();
+    }
+
+    // build the index of a binary point file, then time random queries and
+    // report their I/O
+    public static void main(String[] args) {
+        int cachePages = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CACHE;
+        int queries = 1000;
+
+        long start = System.nanoTime();
+        build(args[0], args[1]);
+        StdOut.printf("built %s in %.3f s\n", args[1], (System.nanoTime() - start) / 1e9);
+
+        try (PagedKdTree index = new PagedKdTree(args[1], cachePages)) {
+            StdOut.println("size = " + index.size() + ", pages = " + index.pages
+                           + ", cache = " + cachePages + " pages");
+
+            long accessed = 0, read = 0, found = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                index.nearest(new Point2D(StdRandom.uniform(), StdRandom.uniform()));
+                accessed += index.pagesAccessed();
+                read += index.pagesRead();
+            }
+            double nearestTime = (System.nanoTime() - start) / 1e3 / queries;
+            StdOut.printf("nearest: %8.3f us, %.2f pages accessed, %.2f pages read per query\n",
+                          nearestTime, (double) accessed / queries, (double) read / queries);
+
+            // squares holding about 10 points each
+            double side = Math.sqrt(10.0 / Math.max(1, index.size()));
+            accessed = 0;
+            read = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                double x = StdRandom.uniform(0.0, 1.0), y = StdRandom.uniform(0.0, 1.0);
+                RectHV rect = new RectHV(x, y, Math.min(1.0, x + side), Math.min(1.0, y + side));
+                for (Point2D p : index.range(rect)) found++;
+                accessed += index.pagesAccessed();
+                read += index.pagesRead();
+            }
+            double rangeTime = (System.nanoTime() - start) / 1e3 / queries;
+            StdOut.printf("range:   %8.3f us, %.2f pages accessed, %.2f pages read per query"
+                          + " (%.1f points)\n", rangeTime, (double) accessed / queries,
+                          (double) read / queries, (double) found / queries);
+        }
+    }
+}
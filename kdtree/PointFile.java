@@ -0,0 +1,242 @@
+/******************************************************************************
+ *  Compilation:  javac PointFile.java
+ *  Execution:    java PointFile input.txt output.bin
+ *  Dependencies: In.algs4 StdOut.algs4
+ *
+ * Binary file of 2d points, read by memory mapping instead of parsing text.
+ *
+ * The file starts with a HEADER-byte header: the magic "PTS1", a kind (POINTS,
+ * or TREE for an ImplicitKdTree saved in tree order) and the number of points n
+ * as a long. Then come the n points as pairs of doubles x, y, and for a TREE
+ * file the n input indices of the points as ints. Everything is little-endian.
+ * A TREE file is also a valid points file.
+ *
+ * A Writer streams points to a file (KdTreeGenerator uses it) and fills in
+ * the count when closed. read() maps the file in chunks of at most CHUNK bytes
+ * and copies the coordinates into two arrays, which ImplicitKdTree.load takes
+ * over without copying them again. PagedKdTree builds a disk-resident index
+ * from a points file of any size without reading it onto the heap.
+ *
+ * The test client converts a text file of points (as written by KdTreeGenerator)
+ * to a binary file.
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class PointFile {
+    static final int HEADER = 16;                  // bytes before the points
+    static final int POINTS = 0;                   // kind of a file of points
+    static final int TREE = 1;                     // kind of a saved ImplicitKdTree
+    private static final int MAGIC = 0x31535450;   // "PTS1" read as a little-endian int
+    private static final int IO_BUFFER = 1 << 16;  // bytes per channel buffer
+    private static final long CHUNK = 1L << 30;    // bytes mapped at a time
+
+    private PointFile() { }
+
+    // sequential writer of points through a buffered file channel
+    public static class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(IO_BUFFER)
+                                                 .order(ByteOrder.LITTLE_ENDIAN);
+        private long n;            // number of points written
+        private int kind = POINTS;
+
+        // create (or truncate) the file
+        public Writer(String filename) {
+            if (filename == null) throw new IllegalArgumentException("Argument is null!");
+            try {
+                channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                                           StandardOpenOption.WRITE,
+                                           StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buf.position(HEADER);   // the header is written on close
+        }
+
+        // append the point (x, y)
+        public void write(double x, double y) {
+            if (kind != POINTS) throw new IllegalStateException("indices already written");
+            if (buf.remaining() < 16) flush();
+            buf.putDouble(x);
+            buf.putDouble(y);
+            n++;
+        }
+
+        // append the input indices of the points, making this a TREE file
+        void writeIndices(int[] ids) {
+            if (ids.length != n) throw new IllegalArgumentException("one index per point");
+            kind = TREE;
+            for (int id : ids) {
+                if (buf.remaining() < 4) flush();
+                buf.putInt(id);
+            }
+        }
+
+        private void flush() {
+            buf.flip();
+            try {
+                while (buf.hasRemaining()) channel.write(buf);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buf.clear();
+        }
+
+        // write the header and close the file
+        public void close() {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(kind).putLong(n).flip();
+            try {
+                while (header.hasRemaining())
+                    channel.write(header, header.position());
+                channel.close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // write the points (xs[i], ys[i]) to a file
+    public static void write(String filename, double[] xs, double[] ys) {
+        if (xs == null || ys == null) throw new IllegalArgumentException("Argument is null!");
+        if (xs.length != ys.length) throw new IllegalArgumentException("arrays differ in length");
+
+        try (Writer out = new Writer(filename)) {
+            for (int i = 0; i < xs.length; i++)
+                out.write(xs[i], ys[i]);
+        }
+    }
+
+    // the points of a file as {xs, ys}
+    public static double[][] read(String filename) {
+        try (FileChannel channel = open(filename)) {
+            int n = count(channel, filename);
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+
+            // map at most CHUNK bytes (a whole number of points) at a time
+            long pointsPerChunk = CHUNK / 16;
+            for (long from = 0; from < n; from += pointsPerChunk) {
+                int m = (int) Math.min(pointsPerChunk, n - from);
+                DoubleBuffer coords = channel.map(FileChannel.MapMode.READ_ONLY,
+                                                  HEADER + 16 * from, 16L * m)
+                                             .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                int offset = (int) from;
+                for (int i = 0; i < m; i++) {
+                    xs[offset + i] = coords.get(2 * i);
+                    ys[offset + i] = coords.get(2 * i + 1);
+                }
+            }
+            return new double[][] { xs, ys };
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the input indices of a TREE file; null for a POINTS file
+    static int[] readIndices(String filename) {
+        try (FileChannel channel = open(filename)) {
+            int n = count(channel, filename);
+            if (kind(channel) != TREE) return null;
+
+            int[] ids = new int[n];
+            long idsPerChunk = CHUNK / 4;
+            for (long from = 0; from < n; from += idsPerChunk) {
+                int m = (int) Math.min(idsPerChunk, n - from);
+                IntBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
+                                            HEADER + 16L * n + 4 * from, 4L * m)
+                                       .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                buf.get(ids, (int) from, m);
+            }
+            return ids;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // number of points in a file
+    public static int count(String filename) {
+        try (FileChannel channel = open(filename)) {
+            return count(channel, filename);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // number of points in a file, which may be more than fit in arrays
+    static long longCount(String filename) {
+        try (FileChannel channel = open(filename)) {
+            return longCount(channel, filename);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static FileChannel open(String filename) throws IOException {
+        if (filename == null) throw new IllegalArgumentException("Argument is null!");
+        return FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+    }
+
+    // the number of points in a file that is read into arrays
+    private static int count(FileChannel channel, String filename) throws IOException {
+        long n = longCount(channel, filename);
+        if (n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("too many points to read: " + filename);
+        return (int) n;
+    }
+
+    // check the header and the length of the file; returns the number of points
+    private static long longCount(FileChannel channel, String filename) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining())
+            if (channel.read(header, header.position()) < 0) break;
+        if (header.position() < HEADER || header.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("not a point file: " + filename);
+
+        long n = header.getLong(8);
+        long bytes = HEADER + 16 * n + (header.getInt(4) == TREE ? 4 * n : 0);
+        if (n < 0 || n > Long.MAX_VALUE / 20 || channel.size() != bytes)
+            throw new IllegalArgumentException("corrupt point file: " + filename);
+        return n;
+    }
+
+    private static int kind(FileChannel channel) throws IOException {
+        ByteBuffer kind = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        while (kind.hasRemaining())
+            if (channel.read(kind, 4 + kind.position()) < 0) break;
+        return kind.getInt(0);
+    }
+
+    // convert a text file of points to a binary file
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        long n = 0;
+        try (Writer out = new Writer(args[1])) {
+            while (!in.isEmpty()) {
+                out.write(in.readDouble(), in.readDouble());
+                n++;
+            }
+        }
+        StdOut.println(n + " points written to " + args[1]);
+    }
+}
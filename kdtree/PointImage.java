@@ -0,0 +1,100 @@
+/******************************************************************************
+ *  Compilation:  javac PointImage.java
+ *  Execution:    none
+ *  Dependencies: In.algs4 PointFile.java
+ *
+ *  Helpers for the visualizers on large inputs: read the points of a text or a
+ *  binary (.bin) point file, and rasterize them once into an image of the unit
+ *  square that StdDraw.picture() draws as the background of every frame, so a
+ *  frame costs one image copy instead of a StdDraw.point() call per point.
+ *
+ *  Up to DOT_LIMIT points are drawn as dots the size of StdDraw.point() with
+ *  pen radius 0.01; more points are drawn as single pixels, which shows the
+ *  density of a million points instead of a black square.
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.In;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+public class PointImage {
+    public static final int SIZE = 512;            // pixels, the default StdDraw canvas
+    private static final int DOT_LIMIT = 10000;    // largest input drawn as dots
+    private static final double DOT = 0.01 * SIZE; // diameter of a dot in pixels
+
+    private PointImage() { }
+
+    // the points of a file as {xs, ys}: a binary PointFile if the name ends in
+    // .bin, otherwise pairs of coordinates in text
+    public static double[][] read(String filename) {
+        if (filename.endsWith(".bin")) return PointFile.read(filename);
+
+        In in = new In(filename);
+        double[] xs = new double[16];
+        double[] ys = new double[16];
+        int n = 0;
+        while (!in.isEmpty()) {
+            if (n == xs.length) {
+                xs = Arrays.copyOf(xs, 2 * n);
+                ys = Arrays.copyOf(ys, 2 * n);
+            }
+            xs[n] = in.readDouble();
+            ys[n] = in.readDouble();
+            n++;
+        }
+        return new double[][] { Arrays.copyOf(xs, n), Arrays.copyOf(ys, n) };
+    }
+
+    // draw the points (xs[i], ys[i]) of the unit square in black on white into a
+    // temporary PNG file; returns its name for StdDraw.picture()
+    public static String write(double[] xs, double[] ys) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, SIZE, SIZE);
+
+        if (xs.length <= DOT_LIMIT) {
+            g.setColor(Color.BLACK);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            for (int i = 0; i < xs.length; i++)
+                g.fill(new Ellipse2D.Double(xs[i] * SIZE - DOT / 2, (1.0 - ys[i]) * SIZE - DOT / 2,
+                                            DOT, DOT));
+        }
+        else {
+            int black = Color.BLACK.getRGB();
+            for (int i = 0; i < xs.length; i++) {
+                // points on the top or right edge go in the last pixel
+                int col = Math.min(SIZE - 1, (int) (xs[i] * SIZE));
+                int row = Math.min(SIZE - 1, (int) ((1.0 - ys[i]) * SIZE));
+                if (col >= 0 && col < SIZE && row >= 0 && row < SIZE) image.setRGB(col, row, black);
+            }
+        }
+        g.dispose();
+
+        try {
+            File file = File.createTempFile("points", ".png");
+            file.deleteOnExit();
+            ImageIO.write(image, "png", file);
+            return file.getPath();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // a duration in nanoseconds in readable units
+    public static String time(long nanos) {
+        if (nanos < 1000000) return String.format("%.1f us", nanos / 1e3);
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,319 @@
+/******************************************************************************
+ *  Compilation:  javac PointSetChecker.java
+ *  Execution:    java PointSetChecker [n] [queries]
+ *  Dependencies: Point2D.algs4 RectHV.algs4 StdOut.algs4 StdRandom.algs4
+ *                PointSET.java KdTree.java CompactKdTree.java ConcurrentKdTree.java
+ *                ImplicitKdTree.java GridIndex.java FlatPointSET.java
+ *                PagedKdTree.java PointFile.java KdTreeND.java KdTreeGenerator.java
+ *
+ *  Checks every point set of this directory against the brute force PointSET,
+ *  and KdTreeND against a linear scan, and throws an IllegalStateException
+ *  naming the set, the input and the query at the first wrong answer (so the
+ *  JVM exits with a nonzero status).
+ *
+ *  The inputs are n points spread uniformly, in tight clusters, on a 50-by-50
+ *  lattice, which repeats points and coordinates, and on a vertical and a
+ *  horizontal line, where every point shares a coordinate with half of the
+ *  others (the case of equal keys in a 2d-tree). They are added in
+ *  ROUNDS rounds; after each round (and before the first) every set answers
+ *  size(), contains() of points in and out of the set, range() of small random
+ *  rectangles and of rectangles with corners on points of the set, and
+ *  nearest(). The sets that support insert() take the points of a round one at
+ *  a time between the queries; the static ones are built again from the points
+ *  added so far.
+ *
+ *  % java PointSetChecker 10000 1000
+ *  uniform: 8 sets agree with PointSET
+ *  clustered: 8 sets agree with PointSET
+ *  lattice: 8 sets agree with PointSET
+ *  lines: 8 sets agree with PointSET
+ *  KdTreeND: d = 3, agrees with a linear scan
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+public class PointSetChecker {
+    private static final int ROUNDS = 4;
+    private static final int SETS = 8;
+
+    // a point set under test; insert is null for a set built in bulk
+    private static class Impl {
+        private final String name;
+        private final Consumer<Point2D> insert;
+        private final LongSupplier size;
+        private final Predicate<Point2D> contains;
+        private final Function<RectHV, Iterable<Point2D>> range;
+        private final Function<Point2D, Point2D> nearest;
+
+        Impl(String name, Consumer<Point2D> insert, LongSupplier size,
+             Predicate<Point2D> contains, Function<RectHV, Iterable<Point2D>> range,
+             Function<Point2D, Point2D> nearest) {
+            this.name = name;
+            this.insert = insert;
+            this.size = size;
+            this.contains = contains;
+            this.range = range;
+            this.nearest = nearest;
+        }
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        check("uniform", KdTreeGenerator.uniform(n), queries);
+        check("clustered", KdTreeGenerator.clustered(n), queries);
+        check("lattice", lattice(n), queries);
+        check("lines", lines(n), queries);
+        checkND(n, 3, queries);
+    }
+
+    // n random points of a 50-by-50 lattice in the unit square
+    private static Point2D[] lattice(int n) {
+        Point2D[] points = new Point2D[n];
+        for (int i = 0; i < n; i++)
+            points[i] = new Point2D(StdRandom.uniform(50) / 50.0, StdRandom.uniform(50) / 50.0);
+        return points;
+    }
+
+    // n points on the lines x = 0.5 and y = 0.25, in random order, with the other
+    // coordinate random (and repeated, since it is one of 1000 values)
+    private static Point2D[] lines(int n) {
+        Point2D[] points = new Point2D[n];
+        for (int i = 0; i < n; i++) {
+            double t = StdRandom.uniform(1000) / 1000.0;
+            points[i] = StdRandom.uniform(2) == 0 ? new Point2D(0.5, t) : new Point2D(t, 0.25);
+        }
+        return points;
+    }
+
+    // check every set on the points, added in ROUNDS rounds
+    private static void check(String input, Point2D[] points, int queries) {
+        Impl[] impls = new Impl[SETS];
+        PointSET brute = new PointSET();
+        int added = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            int to = (int) ((long) points.length * round / ROUNDS);
+            for (int impl = 0; impl < SETS; impl++) {
+                if (impls[impl] == null || impls[impl].insert == null)
+                    impls[impl] = build(impl, Arrays.copyOf(points, to));
+                else
+                    for (int i = added; i < to; i++) {
+                        impls[impl].insert.accept(points[i]);
+                        // a query between inserts
+                        if (i % 64 == 0) impls[impl].size.getAsLong();
+                    }
+            }
+            for (int i = added; i < to; i++)
+                brute.insert(points[i]);
+            added = to;
+
+            for (Impl impl : impls)
+                check(impl, input + " (" + added + " points)", brute, points, added, queries);
+        }
+        StdOut.println(input + ": " + SETS + " sets agree with PointSET");
+    }
+
+    // the set impl of the points
+    private static Impl build(int impl, Point2D[] points) {
+        switch (impl) {
+            case 0: {
+                KdTree set = new KdTree();
+                for (Point2D p : points) set.insert(p);
+                return new Impl("KdTree", set::insert, set::size,
+                                set::contains, set::range, set::nearest);
+            }
+            case 1: {
+                CompactKdTree set = new CompactKdTree();
+                for (Point2D p : points) set.insert(p);
+                return new Impl("CompactKdTree", set::insert, set::size,
+                                set::contains, set::range, set::nearest);
+            }
+            case 2: {
+                ConcurrentKdTree set = new ConcurrentKdTree();
+                for (Point2D p : points) set.insert(p);
+                return new Impl("ConcurrentKdTree", set::insert, set::size,
+                                set::contains, set::range, set::nearest);
+            }
+            case 3: {
+                GridIndex set = new GridIndex();
+                for (Point2D p : points) set.insert(p);
+                return new Impl("GridIndex", set::insert, set::size,
+                                set::contains, set::range, set::nearest);
+            }
+            case 4: {
+                FlatPointSET set = new FlatPointSET();
+                for (Point2D p : points) set.insert(p);
+                return new Impl("FlatPointSET", set::insert, set::size,
+                                set::contains, set::range, set::nearest);
+            }
+            case 5: {
+                ImplicitKdTree set = new ImplicitKdTree(points);
+                return new Impl("ImplicitKdTree", null, set::size,
+                                set::contains, set::range, set::nearest);
+            }
+            case 6: {
+                ImplicitKdTree set = new ImplicitKdTree(xs(points), ys(points), true);
+                return new Impl("ImplicitKdTree (parallel)", null, set::size,
+                                set::contains, set::range, set::nearest);
+            }
+            default: {
+                PagedKdTree set = paged(points);
+                return new Impl("PagedKdTree", null, set::size,
+                                set::contains, set::range, set::nearest);
+            }
+        }
+    }
+
+    // a PagedKdTree of the points, through temporary files, with a small cache
+    private static PagedKdTree paged(Point2D[] points) {
+        try {
+            File pointFile = File.createTempFile("points", ".bin");
+            File indexFile = File.createTempFile("points", ".pkd");
+            pointFile.deleteOnExit();
+            indexFile.deleteOnExit();
+            PointFile.write(pointFile.getPath(), xs(points), ys(points));
+            PagedKdTree.build(pointFile.getPath(), indexFile.getPath());
+            return new PagedKdTree(indexFile.getPath(), 4);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static double[] xs(Point2D[] points) {
+        double[] xs = new double[points.length];
+        for (int i = 0; i < points.length; i++)
+            xs[i] = points[i].x();
+        return xs;
+    }
+
+    private static double[] ys(Point2D[] points) {
+        double[] ys = new double[points.length];
+        for (int i = 0; i < points.length; i++)
+            ys[i] = points[i].y();
+        return ys;
+    }
+
+    // compare the answers of impl with those of brute, which holds points[0..added)
+    private static void check(Impl impl, String input, PointSET brute, Point2D[] points,
+                              int added, int queries) {
+        expect(impl.size.getAsLong() == brute.size(), impl, input,
+               "size() = " + impl.size.getAsLong() + ", expected " + brute.size());
+
+        double side = Math.sqrt(10.0 / Math.max(1, added));
+        for (int t = 0; t < queries; t++) {
+            // every other query is a point of the set
+            Point2D q = t % 2 == 1 && added > 0 ? points[StdRandom.uniform(added)]
+                                                : new Point2D(StdRandom.uniform(), StdRandom.uniform());
+            expect(impl.contains.test(q) == brute.contains(q), impl, input, "contains(" + q + ")");
+
+            Point2D nearest = impl.nearest.apply(q);
+            Point2D expected = brute.nearest(q);
+            if (expected == null) expect(nearest == null, impl, input, "nearest(" + q + ") on empty set");
+            else expect(nearest != null && q.distanceSquaredTo(nearest) == q.distanceSquaredTo(expected),
+                        impl, input, "nearest(" + q + ") = " + nearest + ", expected " + expected);
+
+            // a small rectangle, or one with opposite corners on points of the set
+            RectHV rect;
+            if (t % 2 == 1 && added > 0) {
+                Point2D r = points[StdRandom.uniform(added)];
+                rect = new RectHV(Math.min(q.x(), r.x()), Math.min(q.y(), r.y()),
+                                  Math.max(q.x(), r.x()), Math.max(q.y(), r.y()));
+            }
+            else {
+                double x = StdRandom.uniform(0.0, 1.0), y = StdRandom.uniform(0.0, 1.0);
+                rect = new RectHV(x, y, Math.min(1.0, x + side), Math.min(1.0, y + side));
+            }
+            HashSet<Point2D> found = new HashSet<>();
+            int count = 0;
+            for (Point2D p : impl.range.apply(rect)) {
+                found.add(p);
+                count++;
+            }
+            HashSet<Point2D> inside = new HashSet<>();
+            for (Point2D p : brute.range(rect))
+                inside.add(p);
+            expect(count == found.size() && found.equals(inside), impl, input,
+                   "range(" + rect + ") has " + count + " points, expected " + inside.size());
+        }
+    }
+
+    private static void expect(boolean ok, Impl impl, String input, String query) {
+        if (!ok) throw new IllegalStateException(impl.name + " on " + input + ": " + query);
+    }
+
+    // check k-nearest, nearest and range queries of a KdTreeND of n random
+    // points in d dimensions against a linear scan
+    private static void checkND(int n, int d, int queries) {
+        int k = 10;
+        double[] coords = new double[n * d];
+        for (int i = 0; i < coords.length; i++)
+            coords[i] = StdRandom.uniform();
+        KdTreeND kdtree = new KdTreeND(d, coords);
+
+        double[] q = new double[d];
+        double[] min = new double[d];
+        double[] max = new double[d];
+        double[] brute = new double[n];
+        for (int t = 0; t < queries; t++) {
+            for (int a = 0; a < d; a++)
+                q[a] = StdRandom.uniform();
+            for (int i = 0; i < n; i++)
+                brute[i] = distanceSquared(coords, i, q);
+            Arrays.sort(brute);
+
+            int[] nearest = kdtree.nearest(q, k);
+            if (nearest.length != Math.min(k, n))
+                throw new IllegalStateException("KdTreeND: " + nearest.length + " nearest points");
+            for (int j = 0; j < nearest.length; j++)
+                if (distanceSquared(coords, nearest[j], q) != brute[j])
+                    throw new IllegalStateException("KdTreeND: " + j + "th nearest point of "
+                                                    + Arrays.toString(q));
+            if (n > 0 && distanceSquared(coords, kdtree.nearest(q), q) != brute[0])
+                throw new IllegalStateException("KdTreeND: nearest point of " + Arrays.toString(q));
+
+            for (int a = 0; a < d; a++) {
+                min[a] = q[a] - 0.2;
+                max[a] = q[a] + 0.2;
+            }
+            HashSet<Integer> inside = new HashSet<>();
+            for (int i = 0; i < n; i++) {
+                boolean in = true;
+                for (int a = 0; a < d; a++)
+                    in = in && coords[i * d + a] >= min[a] && coords[i * d + a] <= max[a];
+                if (in) inside.add(i);
+            }
+            HashSet<Integer> found = new HashSet<>();
+            int[] range = kdtree.range(min, max);
+            for (int i : range)
+                found.add(i);
+            if (range.length != found.size() || !found.equals(inside))
+                throw new IllegalStateException("KdTreeND: range around " + Arrays.toString(q));
+        }
+        StdOut.println("KdTreeND: d = " + d + ", agrees with a linear scan");
+    }
+
+    private static double distanceSquared(double[] coords, int i, double[] q) {
+        double dist = 0.0;
+        for (int a = 0; a < q.length; a++) {
+            double diff = coords[i * q.length + a] - q[a];
+            dist += diff * diff;
+        }
+        return dist;
+    }
+}
@@ -1,7 +1,8 @@
 /******************************************************************************
  *  Compilation:  javac RangeSearchVisualizer.java
  *  Execution:    java RangeSearchVisualizer input.txt
- *  Dependencies: PointSET.java KdTree.java
+ *                java RangeSearchVisualizer input.bin
+ *  Dependencies: PointSET.java KdTree.java PointImage.java
  *
  *  Read points from a file (specified as a command-line argument) and
  *  draw to standard draw. Also draw all of the points in the rectangle
@@ -9,30 +10,34 @@
  *
  *  The range search results using the brute-force algorithm are drawn
  *  in red; the results using the kd-tree algorithms are drawn in blue.
+ *  The time each took for the last query is shown at the top.
+ *
+ *  The points are drawn once into an image (see PointImage), which each
+ *  frame draws as its background, so the visualizer keeps up with a million
+ *  points. At most OVERLAY_LIMIT results of each search are drawn.
  *
  ******************************************************************************/
 
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.RectHV;
 import edu.princeton.cs.algs4.StdDraw;
 
 public class RangeSearchVisualizer {
+    private static final int OVERLAY_LIMIT = 10000;
 
     public static void main(String[] args) {
 
         // initialize the data structures from file
         String filename = args[0];
-        In in = new In(filename);
-        KdTree brute = new KdTree();
+        double[][] points = PointImage.read(filename);
+        PointSET brute = new PointSET();
         KdTree kdtree = new KdTree();
-        while (!in.isEmpty()) {
-            double x = in.readDouble();
-            double y = in.readDouble();
-            Point2D p = new Point2D(x, y);
+        for (int i = 0; i < points[0].length; i++) {
+            Point2D p = new Point2D(points[0][i], points[1][i]);
             kdtree.insert(p);
             brute.insert(p);
         }
+        String image = PointImage.write(points[0], points[1]);
 
         double x0 = 0.0, y0 = 0.0;      // initial endpoint of rectangle
         double x1 = 0.0, y1 = 0.0;      // current location of mouse
@@ -40,9 +45,7 @@ public class RangeSearchVisualizer {
 
         // draw the points
         StdDraw.clear();
-        StdDraw.setPenColor(StdDraw.BLACK);
-        StdDraw.setPenRadius(0.01);
-        brute.draw();
+        StdDraw.picture(0.5, 0.5, image, 1.0, 1.0);
         StdDraw.show();
 
         // process range search queries
@@ -69,9 +72,7 @@ public class RangeSearchVisualizer {
 
             // draw the points
             StdDraw.clear();
-            StdDraw.setPenColor(StdDraw.BLACK);
-            StdDraw.setPenRadius(0.01);
-            brute.draw();
+            StdDraw.picture(0.5, 0.5, image, 1.0, 1.0);
 
             // draw the rectangle
             RectHV rect = new RectHV(Math.min(x0, x1), Math.min(y0, y1),
@@ -80,20 +81,41 @@ public class RangeSearchVisualizer {
             StdDraw.setPenRadius();
             rect.draw();
 
+            // time both range searches
+            long start = System.nanoTime();
+            Iterable<Point2D> bruteRange = brute.range(rect);
+            long bruteTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            Iterable<Point2D> kdtreeRange = kdtree.range(rect);
+            long kdtreeTime = System.nanoTime() - start;
+
             // draw the range search results for brute-force data structure in red
             StdDraw.setPenRadius(0.03);
             StdDraw.setPenColor(StdDraw.RED);
-            for (Point2D p : brute.range(rect))
-                p.draw();
+            draw(bruteRange);
 
             // draw the range search results for kd-tree in blue
             StdDraw.setPenRadius(0.02);
             StdDraw.setPenColor(StdDraw.BLUE);
-            for (Point2D p : kdtree.range(rect))
-                p.draw();
+            int count = draw(kdtreeRange);
+
+            // show the latencies
+            StdDraw.setPenColor(StdDraw.WHITE);
+            StdDraw.filledRectangle(0.5, 0.98, 0.5, 0.02);
+            StdDraw.setPenColor(StdDraw.BLACK);
+            StdDraw.textLeft(0.01, 0.98, count + " points   brute force " + PointImage.time(bruteTime)
+                                         + "   kd-tree " + PointImage.time(kdtreeTime));
 
             StdDraw.show();
             StdDraw.pause(20);
         }
     }
+
+    // draw at most OVERLAY_LIMIT of the points; returns the number of points
+    private static int draw(Iterable<Point2D> points) {
+        int count = 0;
+        for (Point2D p : points)
+            if (count++ < OVERLAY_LIMIT) p.draw();
+        return count;
+    }
 }
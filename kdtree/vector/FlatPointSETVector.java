@@ -0,0 +1,80 @@
+/******************************************************************************
+ *  Compilation:  javac --add-modules jdk.incubator.vector -d . vector/FlatPointSETVector.java
+ *  Execution:    none (loaded by FlatPointSET)
+ *  Dependencies: Point2D.algs4 RectHV.algs4 LinkedList.java FlatPointSET.java
+ *
+ *  The scans of FlatPointSET with the incubating vector API. This file is
+ *  compiled only where the module jdk.incubator.vector is available, so it is
+ *  in a directory of its own and no other class refers to it; FlatPointSET
+ *  loads it by name if the JVM runs with --add-modules jdk.incubator.vector,
+ *  and scans one point at a time otherwise.
+ *
+ ******************************************************************************/
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+
+import java.util.LinkedList;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class FlatPointSETVector implements FlatPointSET.Scans {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int BLOCK = 1 << 10;   // points per block in nearest()
+
+    public int loopBound(int n) {
+        return SPECIES.loopBound(n);
+    }
+
+    // the smallest distance of each BLOCK points is found with lanewise minimums,
+    // then the block with the smallest is scanned again for the index, which
+    // costs far less than tracking indices in every lane
+    public int nearest(double[] xs, double[] ys, int n, double x, double y) {
+        int bound = loopBound(n);
+        int step = SPECIES.length();
+        double minDistance = Double.POSITIVE_INFINITY;
+        int minBlock = 0;
+        for (int from = 0; from < bound; from += BLOCK) {
+            int to = Math.min(from + BLOCK, bound);
+            DoubleVector min = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+            for (int i = from; i < to; i += step) {
+                DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, i).sub(x);
+                DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, i).sub(y);
+                min = min.min(dx.mul(dx).add(dy.mul(dy)));
+            }
+            double blockMin = min.reduceLanes(VectorOperators.MIN);
+            if (blockMin < minDistance) {
+                minDistance = blockMin;
+                minBlock = from;
+            }
+        }
+
+        for (int i = minBlock; i < Math.min(minBlock + BLOCK, bound); i++) {
+            double dx = xs[i] - x;
+            double dy = ys[i] - y;
+            if (dx * dx + dy * dy == minDistance) return i;
+        }
+        return 0;
+    }
+
+    public int range(double[] xs, double[] ys, int n, RectHV rect, LinkedList<Point2D> points) {
+        int bound = loopBound(n);
+        int step = SPECIES.length();
+        for (int i = 0; i < bound; i += step) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, xs, i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, ys, i);
+            VectorMask<Double> inside = vx.compare(VectorOperators.GE, rect.xmin())
+                    .and(vx.compare(VectorOperators.LE, rect.xmax()))
+                    .and(vy.compare(VectorOperators.GE, rect.ymin()))
+                    .and(vy.compare(VectorOperators.LE, rect.ymax()));
+            for (long lanes = inside.toLong(); lanes != 0; lanes &= lanes - 1) {
+                int j = i + Long.numberOfTrailingZeros(lanes);
+                points.add(new Point2D(xs[j], ys[j]));
+            }
+        }
+        return bound;
+    }
+}